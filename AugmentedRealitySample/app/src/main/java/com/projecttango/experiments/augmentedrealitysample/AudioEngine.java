@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.experiments.augmentedrealitysample;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.util.Log;
+
+import com.projecttango.tangoutils.audio.PcmMixer;
+import com.projecttango.tangoutils.audio.PcmSample;
+import com.projecttango.tangoutils.audio.WavDecoder;
+import com.projecttango.tangoutils.sonification.NotePlayer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Low latency note player that mixes preloaded samples with a <code>PcmMixer</code> and streams
+ * the result to an <code>AudioTrack</code>.
+ *
+ * The raw WAVE resources are decoded once in a background thread; notes requested before that
+ * are skipped. While started, a dedicated audio thread mixes small blocks of
+ * FRAMES_PER_BLOCK frames, so a note is heard a few milliseconds after it is requested.
+ */
+public class AudioEngine implements NotePlayer {
+    private static final String TAG = AudioEngine.class.getSimpleName();
+
+    private static final int OUTPUT_SAMPLE_RATE = 44100;
+    private static final int FRAMES_PER_BLOCK = 256;
+    private static final int MAX_VOICES = 16;
+
+    private final AudioTrack mAudioTrack;
+    private final short[] mBlock = new short[FRAMES_PER_BLOCK * 2];
+    private volatile PcmMixer mMixer;
+    private int mNextNoteId = 1;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+
+    /**
+     * Starts decoding the given raw WAVE resources, one per note index.
+     */
+    public AudioEngine(final Context context, final int[] resourceIds) {
+        int minBufferSize = AudioTrack.getMinBufferSize(OUTPUT_SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+        mAudioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, OUTPUT_SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBufferSize, FRAMES_PER_BLOCK * 2 * 2 * 2), AudioTrack.MODE_STREAM);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loadSamples(context, resourceIds);
+            }
+        }, TAG + "Loader").start();
+    }
+
+    private void loadSamples(Context context, int[] resourceIds) {
+        PcmSample[] samples = new PcmSample[resourceIds.length];
+        for (int i = 0; i < resourceIds.length; i++) {
+            InputStream in = context.getResources().openRawResource(resourceIds[i]);
+            try {
+                samples[i] = WavDecoder.decode(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to decode sample " + i, e);
+                // Keep the note indices in place with an empty sample.
+                samples[i] = new PcmSample(new short[0], OUTPUT_SAMPLE_RATE);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to close sample " + i, e);
+                }
+            }
+        }
+        mMixer = new PcmMixer(samples, OUTPUT_SAMPLE_RATE, MAX_VOICES, FRAMES_PER_BLOCK);
+    }
+
+    /**
+     * Returns false if the audio output couldn't be initialized, in which case this player
+     * should be released and another one used instead.
+     */
+    public boolean isAvailable() {
+        return mAudioTrack.getState() == AudioTrack.STATE_INITIALIZED;
+    }
+
+    /**
+     * Starts streaming audio.
+     */
+    public synchronized void start() {
+        if (mRunning || !isAvailable()) {
+            return;
+        }
+        mRunning = true;
+        mAudioTrack.play();
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                while (mRunning) {
+                    PcmMixer mixer = mMixer;
+                    if (mixer != null) {
+                        mixer.mix(mBlock, FRAMES_PER_BLOCK);
+                    }
+                    // Blocks until there is room in the track buffer, which paces the loop.
+                    mAudioTrack.write(mBlock, 0, mBlock.length);
+                }
+            }
+        }, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Stops streaming audio and waits for the audio thread to finish.
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+        mAudioTrack.pause();
+        mAudioTrack.flush();
+    }
+
+    @Override
+    public int play(int note, float leftVolume, float rightVolume, int priority, float rate) {
+        PcmMixer mixer = mMixer;
+        // Clamp the rate to the same range as SoundPool.
+        rate = Math.max(0.5f, Math.min(rate, 2f));
+        if (mixer == null || !mixer.play(note, leftVolume, rightVolume, rate)) {
+            return 0;
+        }
+        synchronized (this) {
+            int id = mNextNoteId++;
+            if (mNextNoteId == 0) {
+                mNextNoteId = 1;
+            }
+            return id;
+        }
+    }
+
+    @Override
+    public void release() {
+        stop();
+        mAudioTrack.release();
+    }
+}
@@ -17,10 +17,8 @@
 package com.projecttango.experiments.augmentedrealitysample;
 
 import android.app.Activity;
-import android.content.Context;
-import android.media.AudioManager;
-import android.media.SoundPool;
 import android.os.Bundle;
+import android.os.Process;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
@@ -38,22 +36,48 @@ import com.google.atap.tangoservice.TangoOutOfDateException;
 import com.google.atap.tangoservice.TangoPoseData;
 import com.google.atap.tangoservice.TangoXyzIjData;
 
-import java.nio.FloatBuffer;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.projecttango.rajawali.DeviceExtrinsics;
 import com.projecttango.rajawali.ScenePoseCalculator;
+import com.projecttango.rajawali.ar.FrameLatencyMonitor;
 import com.projecttango.rajawali.ar.TangoRajawaliView;
+import com.projecttango.rajawali.renderables.PerformanceHud;
 import com.projecttango.tangosupport.TangoPointCloudManager;
 import com.projecttango.tangosupport.TangoSupport;
 import com.projecttango.tangosupport.TangoSupport.IntersectionPointPlaneModelPair;
+import com.projecttango.tangoutils.TangoPosePredictor;
+import com.projecttango.tangoutils.depth.NormalEstimator;
+import com.projecttango.tangoutils.depth.SurfaceClassifier;
+import com.projecttango.tangoutils.metrics.Gauge;
+import com.projecttango.tangoutils.metrics.GcCounter;
+import com.projecttango.tangoutils.metrics.LatencyHistogram;
+import com.projecttango.tangoutils.metrics.MetricsRegistry;
+import com.projecttango.tangoutils.metrics.MetricsReporter;
+import com.projecttango.tangoutils.metrics.MetricsSnapshot;
+import com.projecttango.tangoutils.metrics.StripedCounter;
+import com.projecttango.tangoutils.obstacles.GridDiffer;
+import com.projecttango.tangoutils.obstacles.HapticPatternEncoder;
+import com.projecttango.tangoutils.obstacles.ObstacleClusterer;
+import com.projecttango.tangoutils.obstacles.ObstacleDetector;
+import com.projecttango.tangoutils.obstacles.OccupancyGrid;
+import com.projecttango.tangoutils.pipeline.CloudFilter;
+import com.projecttango.tangoutils.pipeline.CloudFrame;
+import com.projecttango.tangoutils.pipeline.DepthPipeline;
+import com.projecttango.tangoutils.pipeline.ProcessingGovernor;
+import com.projecttango.tangoutils.pipeline.SurfaceFilter;
+import com.projecttango.tangoutils.recording.SessionRecorder;
+import com.projecttango.tangoutils.sonification.GridSonifier;
+import com.projecttango.tangoutils.sonification.NotePlayer;
+import com.projecttango.tangoutils.sonification.SonificationScheduler;
+import com.projecttango.tangoutils.sonification.SpatialPanner;
 import com.thalmic.myo.Hub;
-import com.thalmic.myo.Myo;
 
+import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.scene.ASceneFrameCallback;
 
 /**
@@ -90,85 +114,230 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
     private TangoRajawaliView mGLView;
     private AugmentedRealityRenderer mRenderer;
     private TangoCameraIntrinsics mIntrinsics;
-    private DeviceExtrinsics mExtrinsics;
+    // Set when connecting, read by the OpenGL thread and the depth pipeline.
+    private volatile DeviceExtrinsics mExtrinsics;
     private TangoPointCloudManager mPointCloudManager;
     private Tango mTango;
     private Hub hub;
+    private HapticService mHapticService;
+    // Obstacles closer than this get the strongest haptic patterns, farther than
+    // HAPTIC_FAR_DISTANCE the weakest, in meters.
+    private static final float HAPTIC_NEAR_DISTANCE = 1f;
+    private static final float HAPTIC_FAR_DISTANCE = 2.5f;
     private AtomicBoolean mIsConnected = new AtomicBoolean(false);
     private double mCameraPoseTimestamp = 0;
+    // Only used in the OpenGL thread.
+    private TangoPosePredictor mPosePredictor = new TangoPosePredictor();
+    private TangoPoseData mPredictedPose = new TangoPoseData();
+    // Set when Tango is connected, so the OpenGL thread forgets the poses of the previous
+    // connection instead of extrapolating from them.
+    private volatile boolean mIsPoseHistoryStale = true;
     private int gridWidth = 20;
     private int gridHeight = 13;
 
-    private int[][] grid = new int[gridHeight][gridWidth];
-
-
-
-
-    private TimerTask task;
-    private HashMap<Integer, Integer> soundHash;
-    private SoundPool soundPool;
-    private int atIndex;
-    private Timer timer;
-
+    private OccupancyGrid mGrid = new OccupancyGrid(gridWidth, gridHeight);
+    // Maximum distance of the points marked in the grid, in meters.
+    private static final float GRID_TOLERANCE = 7f;
+    // Resolution of the grid over the binned window, in cells per meter.
+    private static final float GRID_ROWS_PER_METER = 6;
+    private static final float GRID_COLUMNS_PER_METER = 10;
+    // Number of consecutive grid updates a cell must keep a new state before it is sonified.
+    private static final int GRID_DEBOUNCE_SNAPSHOTS = 2;
+    // Only sonify the cells that changed since they were last played.
+    private GridDiffer mGridDiffer = new GridDiffer(gridWidth, gridHeight, GRID_DEBOUNCE_SNAPSHOTS);
+    // Builds the grid from the depth clouds and warns about obstacles through the haptic service.
+    private ObstacleDetector mObstacleDetector;
+    // Groups of fewer occupied cells than this aren't reported as obstacles.
+    private static final int OBSTACLE_MIN_CELLS = 2;
+    // Groups the occupied cells of the grid into obstacles, followed from one grid to the next.
+    private ObstacleClusterer mObstacleClusterer =
+            new ObstacleClusterer(gridWidth, gridHeight, OBSTACLE_MIN_CELLS);
+    // Only accessed by the obstacles stage of the depth pipeline.
+    private int mNearestObstacleId = -1;
+
+    // Time between two columns of the sonification sweep.
+    private static final long SONIFICATION_PERIOD_MS = 200;
+
+    // Samples of the sonification notes, by note index.
+    private static final int[] NOTE_RESOURCES = {
+            R.raw.g1s, R.raw.g2s, R.raw.g3s,
+            R.raw.c1s, R.raw.c2s, R.raw.c4s,
+            R.raw.e1s, R.raw.e2s, R.raw.e3s
+    };
+    // Additional samples only available through the PCM mixer, following NOTE_RESOURCES.
+    private static final int[] MIXER_ONLY_RESOURCES = {
+            R.raw.high,
+            R.raw.s33, R.raw.s34, R.raw.s35, R.raw.s36, R.raw.s37,
+            R.raw.s38, R.raw.s39, R.raw.s40, R.raw.s41
+    };
+    private static final int MAX_SOUND_STREAMS = 20;
+    // Maximum number of grid notes started on each sonification tick.
+    private static final int MAX_NOTES_PER_TICK = 4;
+    // Note played at the end of each sweep.
+    private static final int SWEEP_END_NOTE = 4;
+
+    private SonificationScheduler mSonificationScheduler;
+    // Either mAudioEngine or, if it isn't available on this device, a SoundPool based player.
+    private NotePlayer mNotePlayer;
+    private AudioEngine mAudioEngine;
+    private SpatialPanner mSpatialPanner = new SpatialPanner();
+    private GridSonifier mGridSonifier;
 
     public void initSound() {
-        soundPool = new SoundPool(20, AudioManager.STREAM_MUSIC, 0);
-        soundHash = new HashMap<Integer, Integer>();
-        Context context = this;
-        soundHash.put(0, (soundPool.load(context, R.raw.g1s, 1)));
-        soundHash.put(1, (soundPool.load(context, R.raw.g2s, 2)));
-        soundHash.put(2, (soundPool.load(context, R.raw.g3s, 3)));
-        soundHash.put(3, (soundPool.load(context, R.raw.c1s, 4)));
-        soundHash.put(4, (soundPool.load(context, R.raw.c2s, 5)));
-        soundHash.put(5, (soundPool.load(context, R.raw.c4s, 5)));
-        soundHash.put(6, (soundPool.load(context, R.raw.e1s, 4)));
-        soundHash.put(7, (soundPool.load(context, R.raw.e2s, 5)));
-        soundHash.put(8, (soundPool.load(context, R.raw.e3s, 5)));
+        // The samples are loaded asynchronously, only once for the lifetime of the activity.
+        int[] mixerResources = new int[NOTE_RESOURCES.length + MIXER_ONLY_RESOURCES.length];
+        System.arraycopy(NOTE_RESOURCES, 0, mixerResources, 0, NOTE_RESOURCES.length);
+        System.arraycopy(MIXER_ONLY_RESOURCES, 0, mixerResources, NOTE_RESOURCES.length,
+                MIXER_ONLY_RESOURCES.length);
+        mAudioEngine = new AudioEngine(this, mixerResources);
+        if (mAudioEngine.isAvailable()) {
+            mNotePlayer = mAudioEngine;
+        } else {
+            Log.w(TAG, "Low latency audio output unavailable, falling back to SoundPool");
+            mAudioEngine.release();
+            mAudioEngine = null;
+            mNotePlayer = new SoundBank(this, MAX_SOUND_STREAMS, NOTE_RESOURCES);
+        }
     }
 
     public void initPlayer() {
-        atIndex = 0;
-        timer = new Timer();
-        timer.scheduleAtFixedRate(task, 0, 200);
-    }
-
-    private void rings() {
-        if (grid == null) return;
-        // width: 20, height: 13
-        if (atIndex == 20) {
-            soundPool.play(soundHash.get(4), 0.8f,0.8f,0,0,5);
-            atIndex = 0;
-        } else {
-            for (int i = 0; i < 6; i++) {
-                if (grid[i*2][atIndex] == 0) {
-                    soundPool.play(soundHash.get(i), i%2==0?1.0f:0.0f, i%1==1?1.0f:0.0f, 1, 0, i);
-                }
-            }
-            atIndex++;
+        mGridSonifier.reset();
+        if (mAudioEngine != null) {
+            mAudioEngine.start();
         }
-
+        mSonificationScheduler.start();
     }
 
 
     // No need to add any coordinate frame pairs since we are not
-    // using pose data. So just initialize.
+    // using pose data, unless the session is recorded. So just initialize.
     private ArrayList<TangoCoordinateFramePair> framePairs =
             new ArrayList<TangoCoordinateFramePair>();
 
     public static final TangoCoordinateFramePair FRAME_PAIR = new TangoCoordinateFramePair(
             TangoPoseData.COORDINATE_FRAME_START_OF_SERVICE,
             TangoPoseData.COORDINATE_FRAME_DEVICE);
-    private Timer mTimer;
+
+    // When enabled, the scene camera pose is extrapolated ahead of the RGB frame by the measured
+    // camera to display latency. Since the background texture shows the RGB frame as captured,
+    // this is off by default to keep the virtual objects aligned with the camera image.
+    private static final boolean PREDICT_DISPLAY_LATENCY = false;
+
+    // When enabled, the depth clouds and device poses are recorded to the app's external files
+    // directory, e.g. to reproduce false obstacles reported from the field.
+    private static final boolean RECORD_SESSION = false;
+    private static final long RECORDING_CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int RECORDING_POINT_STRIDE = 1;
+    // Store the clouds quantized to millimetres, about 4 times smaller.
+    private static final boolean RECORDING_COMPRESS = true;
+    private static final int RECORDING_CLOUD_SLOTS = 4;
+    private static final int RECORDING_INITIAL_POINTS = 30000;
+    private SessionRecorder mSessionRecorder;
+
+    // Pipeline metrics, dumped to logcat and optionally appended to a file in the app's external
+    // files directory, to tell whether the device keeps up with the depth clouds in the field.
+    private static final long METRICS_DUMP_PERIOD_MS = 10000;
+    private static final boolean METRICS_TO_FILE = false;
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private final StripedCounter mCloudsReceived = mMetrics.counter("depth.clouds_received");
+    private final StripedCounter mCloudsProcessed = mMetrics.counter("depth.clouds_processed");
+    private final LatencyHistogram mDepthCallbackTime = mMetrics.histogram("depth.callback");
+    private final LatencyHistogram mGridBuildTime = mMetrics.histogram("grid.build");
+    private final LatencyHistogram mSonificationTickTime =
+            mMetrics.histogram("sonification.tick");
+    private final StripedCounter mNotesPlayed = mMetrics.counter("sonification.notes_played");
+    private final LatencyHistogram mPreFrameTime = mMetrics.histogram("render.pre_frame");
+    private final StripedCounter mPoseFailures = mMetrics.counter("pose.query_failures");
+    private final LatencyHistogram mPlaneFitTime = mMetrics.histogram("plane_fit");
+    private MetricsReporter mMetricsReporter;
+    // Shows the pipeline metrics over the camera view while testing on the device.
+    private static final boolean SHOW_PERFORMANCE_HUD = false;
+    private static final float HUD_TEXT_SIZE_PX = 28;
+
+    // Stages of the processing governor, by increasing priority: rendering degrades first and
+    // obstacle detection last, since the warnings matter more than a smooth camera view.
+    private static final int STAGE_RENDER = 0;
+    private static final int STAGE_SONIFICATION = 1;
+    private static final int STAGE_OBSTACLES = 2;
+    private static final int STAGE_COUNT = 3;
+    private static final long GOVERNOR_EVALUATION_PERIOD_MS = 2000;
+    // Budgets of the camera to display latency, of a sonification tick and of a grid build.
+    private static final double RENDER_LATENCY_BUDGET_MS = 100;
+    private static final double SONIFICATION_TICK_BUDGET_MS = 10;
+    private static final double GRID_BUILD_BUDGET_MS = 50;
+    // Processing knobs, indexed by the degradation level of their stage.
+    private static final int[] RENDER_FRAME_DIVISORS = {1, 2, 3};
+    private static final int[] SONIFICATION_MAX_NOTES = {MAX_NOTES_PER_TICK, 2, 1};
+    private static final int[] GRID_POINT_STRIDES = {1, 2, 2, 4};
+    private static final long[] GRID_PERIODS_MS = {500, 500, 750, 1000};
+    private final ProcessingGovernor mGovernor =
+            new ProcessingGovernor(STAGE_COUNT, GOVERNOR_EVALUATION_PERIOD_MS);
+    private volatile long mGridPeriodNanos = TimeUnit.MILLISECONDS.toNanos(GRID_PERIODS_MS[0]);
+    // Only accessed by the filter stage of the depth pipeline.
+    private long mLastGridUpdateNanos;
+    private boolean mHasUpdatedGrid = false;
+    // Only accessed by the OpenGL thread.
+    private final long[] mFrameTimestamps = new long[4];
+    private long mLastGovernedFrameNanos = -1;
+
+    // Depth clouds go from the Tango callback through the filter, surfaces and obstacle stages,
+    // each of them only keeping the latest cloud waiting, so a slow stage skips clouds instead of
+    // falling behind. Clouds arriving before the grid is due for an update are dropped by the
+    // filter.
+    private static final int PIPELINE_INITIAL_POINTS = 30000;
+    private static final int PIPELINE_QUEUE_CAPACITY = 1;
+    private final DepthPipeline mDepthPipeline = new DepthPipeline(PIPELINE_INITIAL_POINTS);
+    private final CloudFilter mCloudFilter = new CloudFilter();
+    private final LatencyHistogram mPipelineLatency = mMetrics.histogram("pipeline.latency");
+
+    // The walkable floor is removed from the clouds before they are binned into the grid, so
+    // the feedback only reports what is in the way. Surfaces are classified on a depth image at
+    // 1/8 of the color camera resolution.
+    private static final int SURFACE_DOWNSAMPLING = 8;
+    private static final float NORMAL_MAX_RELATIVE_DEPTH_STEP = 0.1f;
+    private static final float FLOOR_MAX_ANGLE_DEGREES = 30;
+    // The device is held at least this high above the floor, in meters.
+    private static final float FLOOR_MIN_DROP = 0.5f;
+    private final SurfaceFilter mSurfaceFilter = new SurfaceFilter(
+            new NormalEstimator(NORMAL_MAX_RELATIVE_DEPTH_STEP),
+            new SurfaceClassifier(FLOOR_MAX_ANGLE_DEGREES, FLOOR_MIN_DROP),
+            SURFACE_DOWNSAMPLING);
+    private final LatencyHistogram mClusteringTime = mMetrics.histogram("obstacles.clustering");
+    private final LatencyHistogram mSurfaceFilterTime = mMetrics.histogram("surfaces.filter");
+    private final StripedCounter mFloorPointsRemoved = mMetrics.counter("surfaces.floor_points");
+    private final StripedCounter mUpPoseFailures = mMetrics.counter("surfaces.pose_failures");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        task = new TimerTask() {
-            @Override
-            public void run() {
-                rings();
-            }
-        };
+        // Skip rather than rush missed columns after a long stall, so the sweep keeps its beat.
+        mSonificationScheduler = new SonificationScheduler(SONIFICATION_PERIOD_MS,
+                SonificationScheduler.LatePolicy.SKIP, 0,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                                runnable.run();
+                            }
+                        }, SonificationScheduler.class.getSimpleName());
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        long start = System.nanoTime();
+                        // Exceptions are counted by the scheduler, see sonification.failed_ticks.
+                        try {
+                            mNotesPlayed.add(mGridSonifier.tick());
+                        } finally {
+                            mSonificationTickTime.recordSince(start);
+                            mGovernor.recordSince(STAGE_SONIFICATION, start);
+                        }
+                    }
+                });
         mGLView = new TangoRajawaliView(this);
         mRenderer = new AugmentedRealityRenderer(this);
         mGLView.setSurfaceRenderer(mRenderer);
@@ -177,29 +346,148 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
         mPointCloudManager = new TangoPointCloudManager();
         setContentView(mGLView);
         hub = Hub.getInstance();
+        mHapticService = new HapticService(hub);
+        mObstacleDetector = new ObstacleDetector(mGrid, mGridDiffer, GRID_TOLERANCE,
+                GRID_ROWS_PER_METER, GRID_COLUMNS_PER_METER,
+                new HapticPatternEncoder(HAPTIC_NEAR_DISTANCE, HAPTIC_FAR_DISTANCE),
+                mHapticService);
+        mSpatialPanner.configure(gridWidth, GRID_TOLERANCE);
+        initSound();
+        mGridSonifier = new GridSonifier(mGrid, mGridDiffer, mSpatialPanner, mNotePlayer,
+                SWEEP_END_NOTE, MAX_NOTES_PER_TICK);
+        if (RECORD_SESSION) {
+            // Device poses are only delivered for the registered frame pairs.
+            framePairs.add(FRAME_PAIR);
+            mSessionRecorder = new SessionRecorder(getExternalFilesDir(null),
+                    "session-" + System.currentTimeMillis(), RECORDING_CHUNK_BYTES,
+                    RECORDING_POINT_STRIDE, RECORDING_COMPRESS, RECORDING_CLOUD_SLOTS,
+                    RECORDING_INITIAL_POINTS);
+        }
+        initMetrics();
+        initGovernor();
+        initPipeline();
     }
 
-    @Override
-    protected void onStop() {
-        mTimer.cancel();
-        super.onStop();
+    private void initMetrics() {
+        GcCounter.start();
+        mMetrics.gauge("gc.count", new Gauge() {
+            @Override
+            public long get() {
+                return GcCounter.getCount();
+            }
+        });
+        mMetrics.gauge("obstacles.clusters", new Gauge() {
+            @Override
+            public long get() {
+                return mObstacleClusterer.getClusterCount();
+            }
+        });
+        mMetrics.gauge("sonification.failed_ticks", new Gauge() {
+            @Override
+            public long get() {
+                return mSonificationScheduler.getFailedTicks();
+            }
+        });
+        mMetrics.gauge("haptic.commands_sent", new Gauge() {
+            @Override
+            public long get() {
+                return mHapticService.getSentCommands();
+            }
+        });
+        mMetrics.gauge("haptic.commands_dropped", new Gauge() {
+            @Override
+            public long get() {
+                return mHapticService.getDroppedCommands();
+            }
+        });
+        if (METRICS_TO_FILE) {
+            File file = new File(getExternalFilesDir(null),
+                    "metrics-" + System.currentTimeMillis() + ".txt");
+            mMetricsReporter = new MetricsReporter(mMetrics, METRICS_DUMP_PERIOD_MS,
+                    new MetricsReporter.FileSink(file.getPath()));
+        } else {
+            mMetricsReporter = new MetricsReporter(mMetrics, METRICS_DUMP_PERIOD_MS,
+                    new MetricsReporter.Sink() {
+                        @Override
+                        public void report(MetricsSnapshot snapshot, String formatted) {
+                            Log.i(TAG, "Pipeline metrics:\n" + formatted);
+                        }
+                    });
+        }
+        if (SHOW_PERFORMANCE_HUD) {
+            initPerformanceHud();
+        }
     }
 
-    @Override
-    protected void onStart() {
-        mTimer = new Timer();
-        mTimer.scheduleAtFixedRate(new TimerTask() {
+    private void initPerformanceHud() {
+        PerformanceHud hud = mRenderer.showPerformanceHud(HUD_TEXT_SIZE_PX);
+        hud.addRateLine("depth fps", new PerformanceHud.Value() {
+            @Override
+            public double get() {
+                return mCloudsReceived.get();
+            }
+        });
+        hud.addLine("grid build ms", 1, new PerformanceHud.Value() {
+            @Override
+            public double get() {
+                return mGridBuildTime.getLastMicros() / 1000.0;
+            }
+        });
+        hud.addLine("gc count", 0, new PerformanceHud.Value() {
+            @Override
+            public double get() {
+                return GcCounter.getCount();
+            }
+        });
+        hud.addLine("occupied cells", 0, new PerformanceHud.Value() {
+            @Override
+            public double get() {
+                return mGrid.getOccupiedCount();
+            }
+        });
+        hud.addLine("obstacles", 0, new PerformanceHud.Value() {
             @Override
-            public void run() {
-                boolMatrix(7f);
+            public double get() {
+                return mObstacleClusterer.getClusterCount();
             }
-        }, 100, 500);
-        super.onStart();
+        });
+    }
+
+    /**
+     * Gets the metrics of the depth to feedback pipeline.
+     */
+    public MetricsRegistry getMetrics() {
+        return mMetrics;
+    }
+
+    @Override
+    protected void onDestroy() {
+        mNotePlayer.release();
+        super.onDestroy();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        mDepthPipeline.stop();
+        if (mDepthPipeline.getError() != null) {
+            Log.e(TAG, "Error while processing depth clouds", mDepthPipeline.getError());
+        }
+        mSonificationScheduler.stop();
+        mHapticService.stop();
+        mMetricsReporter.stop();
+        if (mMetricsReporter.getError() != null) {
+            Log.e(TAG, "Unable to dump metrics", mMetricsReporter.getError());
+        }
+        if (mAudioEngine != null) {
+            mAudioEngine.stop();
+        }
+        if (mSessionRecorder != null) {
+            mSessionRecorder.stop();
+            if (mSessionRecorder.getError() != null) {
+                Log.e(TAG, "Session recording failed", mSessionRecorder.getError());
+            }
+        }
         if (mIsConnected.compareAndSet(true, false)) {
             mRenderer.getCurrentScene().clearFrameCallbacks();
             mGLView.disconnectCamera();
@@ -207,12 +495,6 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
         }
     }
 
-    private void vibrate() {
-        if (hub.getConnectedDevices().size() > 0) {
-            hub.getConnectedDevices().get(0).vibrate(Myo.VibrationType.MEDIUM);
-        }
-    }
-
     @Override
     protected void onResume() {
         super.onResume();
@@ -228,8 +510,13 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
             }
         }
 
-        initSound();
         initPlayer();
+        mHapticService.start();
+        mDepthPipeline.start();
+        if (mSessionRecorder != null) {
+            mSessionRecorder.start();
+        }
+        mMetricsReporter.start();
     }
 
     /**
@@ -247,11 +534,17 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
                 TangoConfig.KEY_BOOLEAN_LOWLATENCYIMUINTEGRATION, true);
         config.putBoolean(TangoConfig.KEY_BOOLEAN_DEPTH, true);
         mTango.connect(config);
+        // The predictor and camera pose timestamp are only accessed by the OpenGL thread.
+        mIsPoseHistoryStale = true;
 
         mTango.connectListener(framePairs, new OnTangoUpdateListener() {
             @Override
             public void onPoseAvailable(TangoPoseData pose) {
-                // We are not using OnPoseAvailable for this app.
+                // Poses are only received while recording the session.
+                if (mSessionRecorder != null) {
+                    mSessionRecorder.onPoseAvailable(pose.timestamp, pose.baseFrame,
+                            pose.targetFrame, pose.statusCode, pose.translation, pose.rotation);
+                }
             }
 
             @Override
@@ -265,8 +558,18 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
 
             @Override
             public void onXyzIjAvailable(TangoXyzIjData xyzIj) {
-                // Save the cloud and point data for later use.
+                long start = System.nanoTime();
+                mCloudsReceived.increment();
+                // Save the cloud and point data for the plane fitting.
                 mPointCloudManager.updateXyzIj(xyzIj);
+                // Only copies the cloud, it's processed by the pipeline threads.
+                mDepthPipeline.offer(xyzIj.timestamp, xyzIj.xyz, xyzIj.xyzCount);
+                if (mSessionRecorder != null) {
+                    // Only copies the cloud, it's written in the background.
+                    mSessionRecorder.onXyzIjAvailable(xyzIj.timestamp, xyzIj.xyz,
+                            xyzIj.xyzCount);
+                }
+                mDepthCallbackTime.recordSince(start);
             }
 
             @Override
@@ -279,6 +582,9 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
         // to be done after connecting Tango and listeners.
         mExtrinsics = setupExtrinsics(mTango);
         mIntrinsics = mTango.getCameraIntrinsics(TangoCameraIntrinsics.TANGO_CAMERA_COLOR);
+        // The depth camera is close enough to the color camera to share its projection.
+        mSurfaceFilter.setIntrinsics(mIntrinsics.fx, mIntrinsics.fy, mIntrinsics.cx,
+                mIntrinsics.cy, mIntrinsics.width, mIntrinsics.height);
     }
 
     /**
@@ -307,18 +613,40 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
                 // If a new RGB frame has been rendered, update the camera pose to match.
                 // NOTE: This doesn't need to be synchronized since the renderer provided timestamp
                 // is also set in this same OpenGL thread.
+                long start = System.nanoTime();
+                if (mIsPoseHistoryStale) {
+                    mIsPoseHistoryStale = false;
+                    mPosePredictor.reset();
+                    mCameraPoseTimestamp = 0;
+                }
                 double rgbTimestamp = mRenderer.getTimestamp();
                 if (rgbTimestamp > mCameraPoseTimestamp) {
                     // Calculate the device pose at the camera frame update time.
                     TangoPoseData lastFramePose = mTango.getPoseAtTime(rgbTimestamp, FRAME_PAIR);
                     if (lastFramePose.statusCode == TangoPoseData.POSE_VALID) {
+                        mPosePredictor.addPose(lastFramePose);
+                        if (PREDICT_DISPLAY_LATENCY) {
+                            double latency = mRenderer.getLatencyMonitor()
+                                    .getMeanLatency(FrameLatencyMonitor.STAGE_DRAW);
+                            if (mPosePredictor.predict(rgbTimestamp + latency, mPredictedPose)) {
+                                lastFramePose = mPredictedPose;
+                            }
+                        }
                         // Update the camera pose from the renderer
                         mRenderer.updateRenderCameraPose(lastFramePose, mExtrinsics);
-                        mCameraPoseTimestamp = lastFramePose.timestamp;
+                        mCameraPoseTimestamp = rgbTimestamp;
+                    } else if (mPosePredictor.predict(rgbTimestamp, mPredictedPose)) {
+                        // Extrapolate from the last valid poses rather than keeping a stale one.
+                        mPoseFailures.increment();
+                        mRenderer.updateRenderCameraPose(mPredictedPose, mExtrinsics);
+                        mCameraPoseTimestamp = rgbTimestamp;
                     } else {
+                        mPoseFailures.increment();
                         Log.w(TAG, "Unable to get device pose at time: " + rgbTimestamp);
                     }
                 }
+                recordFrameLatency();
+                mPreFrameTime.recordSince(start);
             }
 
             @Override
@@ -338,97 +666,178 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
         });
     }
 
-    private float getAveragedDepth(FloatBuffer pointCloudBuffer){
-        int pointCount = pointCloudBuffer.capacity() / 3;
-        float totalZ = 0;
-        float averageZ = 0;
-        for (int i = 0; i < pointCloudBuffer.capacity() - 3; i = i + 3) {
-            totalZ = totalZ + pointCloudBuffer.get(i + 2);
+    /**
+     * Feeds the camera to display latency of the last drawn frame to the governor.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    private void recordFrameLatency() {
+        if (mRenderer.getLatencyMonitor().getLastFrameTimestamps(mFrameTimestamps)) {
+            long callbackNanos = mFrameTimestamps[0];
+            long drawNanos = mFrameTimestamps[3];
+            if (drawNanos >= 0 && drawNanos != mLastGovernedFrameNanos) {
+                mGovernor.record(STAGE_RENDER, drawNanos - callbackNanos);
+                mLastGovernedFrameNanos = drawNanos;
+            }
         }
-        if (pointCount != 0)
-            averageZ = totalZ / pointCount;
-        return  averageZ;
     }
 
-    private float distanceCheck(float[] xyz) {
-        return (float)Math.sqrt(Math.pow(xyz[0], 2) + Math.pow(xyz[1], 2) + Math.pow(xyz[2], 2));
+    private void initGovernor() {
+        mGovernor.configureStage(STAGE_RENDER, STAGE_RENDER, RENDER_LATENCY_BUDGET_MS,
+                RENDER_FRAME_DIVISORS.length - 1);
+        mGovernor.configureStage(STAGE_SONIFICATION, STAGE_SONIFICATION,
+                SONIFICATION_TICK_BUDGET_MS, SONIFICATION_MAX_NOTES.length - 1);
+        mGovernor.configureStage(STAGE_OBSTACLES, STAGE_OBSTACLES, GRID_BUILD_BUDGET_MS,
+                GRID_POINT_STRIDES.length - 1);
+        mMetrics.gauge("governor.render_level", new Gauge() {
+            @Override
+            public long get() {
+                return mGovernor.getLevel(STAGE_RENDER);
+            }
+        });
+        mMetrics.gauge("governor.sonification_level", new Gauge() {
+            @Override
+            public long get() {
+                return mGovernor.getLevel(STAGE_SONIFICATION);
+            }
+        });
+        mMetrics.gauge("governor.obstacles_level", new Gauge() {
+            @Override
+            public long get() {
+                return mGovernor.getLevel(STAGE_OBSTACLES);
+            }
+        });
     }
 
-    public boolean collision(){
-        int height=0;
-        for (int i=12; i>3; --i){
-            for (int j=2; j<=17; ++j){
-                if (grid[i][j] == 1 && grid[i][j+1] == 1){
-                    height++;
-                }
-            }
-        }
-        if (height > 1){
-            return true;
-        } else {
-            return false;
-        }
+    /**
+     * Applies the degradation levels chosen by the governor to the processing knobs.
+     * NOTE: This needs to be called from the obstacles stage of the depth pipeline.
+     */
+    private void applyGovernorLevels() {
+        int renderLevel = mGovernor.getLevel(STAGE_RENDER);
+        int sonificationLevel = mGovernor.getLevel(STAGE_SONIFICATION);
+        int obstaclesLevel = mGovernor.getLevel(STAGE_OBSTACLES);
+        mRenderer.setRenderFrameDivisor(RENDER_FRAME_DIVISORS[renderLevel]);
+        mGridSonifier.setMaxNotesPerTick(SONIFICATION_MAX_NOTES[sonificationLevel]);
+        mCloudFilter.setPointStride(GRID_POINT_STRIDES[obstaclesLevel]);
+        mGridPeriodNanos = TimeUnit.MILLISECONDS.toNanos(GRID_PERIODS_MS[obstaclesLevel]);
+        Log.i(TAG, "Processing levels changed, render: " + renderLevel + ", sonification: "
+                + sonificationLevel + ", obstacles: " + obstaclesLevel);
     }
 
-    public void leftRight(){
-        int leftEmpty=0;
-        int rightEmpty=0;
-        for (int j=12; j>=0; --j){
-            for (int i=0; i<10; ++i){
-                if (grid[j][i] == 0){
-                    leftEmpty++;
+    private void initPipeline() {
+        mDepthPipeline.addStage("filter", PIPELINE_QUEUE_CAPACITY, new DepthPipeline.Stage() {
+            @Override
+            public boolean process(CloudFrame frame) {
+                long now = System.nanoTime();
+                if (mHasUpdatedGrid && now - mLastGridUpdateNanos < mGridPeriodNanos) {
+                    return false;
                 }
+                mHasUpdatedGrid = true;
+                mLastGridUpdateNanos = now;
+                return mCloudFilter.process(frame);
             }
+        });
+        mDepthPipeline.addStage("surfaces", PIPELINE_QUEUE_CAPACITY, new DepthPipeline.Stage() {
+            @Override
+            public boolean process(CloudFrame frame) {
+                long start = System.nanoTime();
+                updateUpDirection(frame.getTimestamp());
+                mSurfaceFilter.process(frame);
+                mFloorPointsRemoved.add(mSurfaceFilter.getRemovedCount());
+                mSurfaceFilterTime.recordSince(start);
+                return true;
+            }
+        });
+        mDepthPipeline.addStage("obstacles", PIPELINE_QUEUE_CAPACITY, new DepthPipeline.Stage() {
+            @Override
+            public boolean process(CloudFrame frame) {
+                updateObstacles(frame);
+                return true;
+            }
+        });
+        for (int i = 0; i < mDepthPipeline.getStageCount(); i++) {
+            final int stage = i;
+            String name = "pipeline." + mDepthPipeline.getStageName(stage);
+            mMetrics.gauge(name + ".processed", new Gauge() {
+                @Override
+                public long get() {
+                    return mDepthPipeline.getProcessedCount(stage);
+                }
+            });
+            mMetrics.gauge(name + ".dropped", new Gauge() {
+                @Override
+                public long get() {
+                    return mDepthPipeline.getDroppedCount(stage);
+                }
+            });
         }
+    }
 
-        for (int j=12; j>=0; --j){
-            for (int i=10; i<20; ++i){
-                if (grid[j][i] == 0){
-                    rightEmpty++;
-                }
-            }
+    /**
+     * Points the up direction of the surface classification along the gravity axis of the start
+     * of service frame, as seen by the depth camera when the cloud was acquired. Keeps the last
+     * direction if the pose isn't available.
+     * NOTE: This needs to be called from the surfaces stage of the depth pipeline.
+     */
+    private void updateUpDirection(double timestamp) {
+        DeviceExtrinsics extrinsics = mExtrinsics;
+        if (!mIsConnected.get() || extrinsics == null) {
+            return;
         }
-/*
-        if (leftEmpty > rightEmpty){
-            vibrate();
-        } else {
-            vibrate();
-            vibrate();
+        TangoPoseData devicePose = mTango.getPoseAtTime(timestamp, FRAME_PAIR);
+        if (devicePose.statusCode != TangoPoseData.POSE_VALID) {
+            mUpPoseFailures.increment();
+            return;
         }
-        */
+        Matrix4 startServiceTdepth = ScenePoseCalculator.tangoPoseToMatrix(devicePose)
+                .multiply(extrinsics.getDeviceTDepthCamera());
+        // The third row of the rotation is the z axis of the start of service frame, which
+        // points up, in the depth camera frame.
+        double[] m = startServiceTdepth.getDoubleValues();
+        mSurfaceFilter.setUpDirection((float) m[Matrix4.M20], (float) m[Matrix4.M21],
+                (float) m[Matrix4.M22]);
     }
 
-    private void boolMatrix(float tolerance){
-
-        for (int i=0; i<gridHeight; ++i){
-            for (int j=0; j<gridWidth; ++j){
-                grid[i][j] = 0;
-            }
+    /**
+     * Rebuilds the grid from a filtered cloud and sends the obstacle warnings.
+     * NOTE: This needs to be called from the obstacles stage of the depth pipeline.
+     */
+    private void updateObstacles(CloudFrame frame) {
+        mCloudsProcessed.increment();
+        long start = System.nanoTime();
+        mObstacleDetector.update(frame.getPoints(), frame.getPointCount());
+        mGridBuildTime.recordSince(start);
+        long clusteringStart = System.nanoTime();
+        mObstacleClusterer.update(mGrid);
+        logNearestObstacle();
+        mClusteringTime.recordSince(clusteringStart);
+        mGovernor.recordSince(STAGE_OBSTACLES, start);
+        mPipelineLatency.recordSince(frame.getArrivalNanos());
+        if (mGovernor.evaluate(System.nanoTime())) {
+            applyGovernorLevels();
         }
+    }
 
-        TangoXyzIjData latestXyzIj = mPointCloudManager.getLatestXyzIj();
-        if (latestXyzIj != null){
-            final FloatBuffer buf = latestXyzIj.xyz;
-            for (int i = 0; i < latestXyzIj.xyzCount; i++){
-                float point[] = new float[3];
-                point[0] = buf.get(i*3);
-                point[1] = buf.get(i*3+1);
-                point[2] = buf.get(i*3+2);
-                //Log.d("rr", point[0]+","+point[1]+","+point[2]);
-                //Log.d("Distance: ",Float.toString(distanceCheck(point)));
-                if (point[0] >= -1.0f && point[0] < 1.0f &&
-                        point[1] >= -1.0f && point[1] < 1.0f){
-                    if (distanceCheck(point) < tolerance) {
-                        grid[(int) ((point[1] + 1.0f) * 6)][(int) ((point[0] + 1.0f) * 10)] = 1;
-                    }
-
-                }
-
-            }
-        if (collision() && getAveragedDepth(latestXyzIj.xyz) <= tolerance){
-            leftRight();
+    /**
+     * Logs the nearest obstacle whenever a different one becomes the nearest.
+     * NOTE: This needs to be called from the obstacles stage of the depth pipeline.
+     */
+    private void logNearestObstacle() {
+        int nearest = mObstacleClusterer.getNearestCluster();
+        int nearestId = nearest < 0 ? -1 : mObstacleClusterer.getId(nearest);
+        if (nearestId == mNearestObstacleId) {
+            return;
         }
-    }
+        mNearestObstacleId = nearestId;
+        if (nearest < 0) {
+            Log.d(TAG, "No obstacle ahead");
+            return;
+        }
+        // Columns follow the x axis of the depth camera, left to right.
+        float offset = (mObstacleClusterer.getCentroidColumn(nearest) + 0.5f) / gridWidth - 0.5f;
+        String side = offset < -0.15f ? "ahead-left" : offset > 0.15f ? "ahead-right" : "ahead";
+        Log.d(TAG, String.format("Nearest obstacle %d: %s at %.1f m", nearestId, side,
+                mObstacleClusterer.getNearestDistance(nearest)));
     }
 
     private void StairChecker(TangoXyzIjData latestXyzIj){
@@ -467,12 +876,14 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
 
             try {
                 // Fit a plane on the clicked point using the latest poiont cloud data
+                long start = System.nanoTime();
                 TangoPoseData planeFitPose = doFitPlane(u, v, mRenderer.getTimestamp());
+                mPlaneFitTime.recordSince(start);
 
                 if (planeFitPose != null) {
-                    // Update the position of the rendered cube to the pose of the detected plane
-                    // This update is made thread safe by the renderer
-                    mRenderer.updateObjectPose(planeFitPose);
+                    // Place a rendered cube at the pose of the detected plane
+                    // This update is queued to the render thread by the renderer
+                    mRenderer.addObject(planeFitPose);
                 }
 
             } catch (TangoException t) {
@@ -517,6 +928,9 @@ public class AugmentedRealityActivity extends Activity implements View.OnTouchLi
         // Get the device pose at the time the plane data was acquired.
         TangoPoseData devicePose =
                 mTango.getPoseAtTime(xyzIj.timestamp, FRAME_PAIR);
+        if (devicePose.statusCode != TangoPoseData.POSE_VALID) {
+            mPoseFailures.increment();
+        }
 
         // Update the AR object location.
         TangoPoseData planeFitPose = ScenePoseCalculator.planeFitToTangoWorldPose(
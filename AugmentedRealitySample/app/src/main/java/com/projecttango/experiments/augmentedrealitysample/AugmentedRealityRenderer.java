@@ -33,29 +33,37 @@ import org.rajawali3d.primitives.Cube;
 import com.projecttango.rajawali.DeviceExtrinsics;
 import com.projecttango.rajawali.Pose;
 import com.projecttango.rajawali.ScenePoseCalculator;
+import com.projecttango.rajawali.ar.AnchorManager;
 import com.projecttango.rajawali.ar.TangoRajawaliRenderer;
 
 /**
- * Very simple example augmented reality renderer which displays a cube fixed in place.
- * Whenever the user clicks on the screen, the cube is placed flush with the surface detected
- * with the depth camera in the position clicked.
+ * Very simple example augmented reality renderer which displays cubes fixed in place.
+ * Whenever the user clicks on the screen, a cube is placed flush with the surface detected
+ * with the depth camera in the position clicked. The first click moves the initial cube, and
+ * once MAX_OBJECTS cubes have been placed the oldest one is reused.
  *
  * This follows the same development model than any regular Rajawali application
  * with the following peculiarities:
  * - It extends <code>TangoRajawaliArRenderer</code>.
  * - It calls <code>super.initScene()</code> in the initialization.
- * - When an updated pose for the object is obtained after a user click, the object pose is updated
- *   in the render loop
+ * - When an updated pose for an object is obtained after a user click, it is queued in an
+ *   <code>AnchorManager</code> and the object pose is updated in the render loop
  * - The associated AugmentedRealityActivity is taking care of updating the camera pose to match
  *   the displayed RGB camera texture and produce the AR effect through a Scene Frame Callback
  *   (@see AugmentedRealityActivity)
  */
-public class AugmentedRealityRenderer extends TangoRajawaliRenderer {
+public class AugmentedRealityRenderer extends TangoRajawaliRenderer
+        implements AnchorManager.ObjectFactory {
     private static final float CUBE_SIDE_LENGTH = 0.5f;
+    private static final int MAX_OBJECTS = 32;
+    // Anchor of the cube shown before the user clicks anywhere.
+    private static final int INITIAL_OBJECT_ID = 0;
 
     private Object3D mObject;
-    private Pose mObjectPose;
-    private boolean mObjectPoseUpdated = false;
+    private Material mObjectMaterial;
+    // Move each cube forward by half of its size to make it flush with the plane surface.
+    private final AnchorManager mAnchors =
+            new AnchorManager(MAX_OBJECTS, CUBE_SIDE_LENGTH / 2.0f, this);
 
     public AugmentedRealityRenderer(Context context) {
         super(context);
@@ -88,6 +96,8 @@ public class AugmentedRealityRenderer extends TangoRajawaliRenderer {
         material.enableLighting(true);
         material.setDiffuseMethod(new DiffuseMethod.Lambert());
 
+        mObjectMaterial = material;
+
         // Build a Cube and place it initially in the origin.
         mObject = new Cube(CUBE_SIDE_LENGTH);
         mObject.setMaterial(material);
@@ -97,31 +107,50 @@ public class AugmentedRealityRenderer extends TangoRajawaliRenderer {
     }
 
     @Override
-    protected void onRender(long elapsedRealTime, double deltaTime) {
-        // Update the AR object if necessary
-        // Synchronize against concurrent access with the setter below.
-        synchronized (this) {
-            if (mObjectPoseUpdated) {
-                // Place the 3D object in the location of the detected plane.
-                mObject.setPosition(mObjectPose.getPosition());
-                mObject.setOrientation(mObjectPose.getOrientation());
-                // Move it forward by half of the size of the cube to make it
-                // flush with the plane surface.
-                mObject.moveForward(CUBE_SIDE_LENGTH / 2.0f);
-                mObjectPoseUpdated = false;
-            }
+    public Object3D createObject(int anchorId) {
+        if (anchorId == INITIAL_OBJECT_ID) {
+            return mObject;
         }
+        Object3D object = new Cube(CUBE_SIDE_LENGTH);
+        object.setMaterial(mObjectMaterial);
+        getCurrentScene().addChild(object);
+        return object;
+    }
+
+    @Override
+    protected void onRender(long elapsedRealTime, double deltaTime) {
+        // Place the AR objects in the location of the detected planes.
+        // The anchor queue is lock-free so this doesn't block the UI thread.
+        mAnchors.applyPendingUpdates();
 
         super.onRender(elapsedRealTime, deltaTime);
     }
 
     /**
-     * Save the updated plane fit pose to update the AR object on the next render pass.
-     * This is synchronized against concurrent access in the render loop above.
+     * Places a new AR object at the plane fit pose on the next render pass.
+     * This must always be called from the same thread (e.g. the UI thread) as
+     * <code>updateObjectPose</code>.
+     *
+     * @return false if too many updates are pending and the object couldn't be placed.
      */
-    public synchronized void updateObjectPose(TangoPoseData planeFitPose) {
-        mObjectPose = ScenePoseCalculator.toOpenGLPose(planeFitPose);
-        mObjectPoseUpdated = true;
+    public boolean addObject(TangoPoseData planeFitPose) {
+        if (mAnchors.addAnchor(planeFitPose) < 0) {
+            return false;
+        }
+        // Show the placed object right away instead of waiting for the next RGB frame.
+        requestSceneRender();
+        return true;
+    }
+
+    /**
+     * Moves the initial AR object to the plane fit pose on the next render pass.
+     * This must always be called from the same thread (e.g. the UI thread) as
+     * <code>addObject</code>.
+     */
+    public void updateObjectPose(TangoPoseData planeFitPose) {
+        if (mAnchors.updateAnchor(INITIAL_OBJECT_ID, planeFitPose)) {
+            requestSceneRender();
+        }
     }
 
     /**
@@ -135,6 +164,7 @@ public class AugmentedRealityRenderer extends TangoRajawaliRenderer {
         Pose cameraPose = ScenePoseCalculator.toOpenGlCameraPose(devicePose, extrinsics);
         getCurrentCamera().setRotation(cameraPose.getOrientation());
         getCurrentCamera().setPosition(cameraPose.getPosition());
+        getLatencyMonitor().onPoseQueried();
     }
 
     @Override
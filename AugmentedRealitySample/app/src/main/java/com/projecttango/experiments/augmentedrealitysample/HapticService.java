@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.experiments.augmentedrealitysample;
+
+import android.util.Log;
+
+import com.projecttango.tangoutils.obstacles.HapticPattern;
+import com.projecttango.tangoutils.obstacles.HapticPlayer;
+import com.thalmic.myo.AbstractDeviceListener;
+import com.thalmic.myo.Hub;
+import com.thalmic.myo.Myo;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends vibration patterns to the connected Myo devices from a single worker thread.
+ *
+ * Callers never block: patterns go into a single latest-wins slot, a new pattern replacing the
+ * one waiting to be played. The worker plays the pulses of the pattern with its timing and never
+ * vibrates the same device more often than MIN_INTERVAL_MS, so bursts of feedback don't flood the
+ * Bluetooth link. A new pattern cuts off the one playing between two pulses, so warnings are
+ * always about the latest obstacles rather than stale ones. The list of connected devices is kept
+ * up to date from <code>Hub</code> listener events instead of being queried for every command.
+ */
+public class HapticService implements HapticPlayer {
+    private static final String TAG = HapticService.class.getSimpleName();
+
+    private static final long MIN_INTERVAL_MS = 300;
+    private static final long MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(MIN_INTERVAL_MS);
+
+    private final Hub mHub;
+    // Myo vibration of each HapticPattern pulse strength.
+    private static final Myo.VibrationType[] VIBRATION_TYPES = {
+            Myo.VibrationType.SHORT, Myo.VibrationType.MEDIUM, Myo.VibrationType.LONG
+    };
+    private static final HapticPattern[] SINGLE_PULSES = {
+            HapticPattern.single(HapticPattern.PULSE_SHORT),
+            HapticPattern.single(HapticPattern.PULSE_MEDIUM),
+            HapticPattern.single(HapticPattern.PULSE_LONG)
+    };
+
+    // Latest pattern not played yet, if any.
+    private final AtomicReference<HapticPattern> mPending = new AtomicReference<HapticPattern>();
+    private final CopyOnWriteArrayList<Device> mDevices = new CopyOnWriteArrayList<Device>();
+    private final DeviceListener mDeviceListener = new DeviceListener();
+
+    private volatile Thread mThread;
+    private volatile boolean mRunning = false;
+    private final AtomicLong mDroppedCommands = new AtomicLong();
+    private final AtomicLong mSentCommands = new AtomicLong();
+
+    // Connected device together with the time of its last vibration.
+    private static class Device {
+        final Myo mMyo;
+        // Only accessed by the worker thread.
+        long mLastVibrationNanos = Long.MIN_VALUE / 2;
+
+        Device(Myo myo) {
+            mMyo = myo;
+        }
+    }
+
+    private class DeviceListener extends AbstractDeviceListener {
+        @Override
+        public void onConnect(Myo myo, long timestamp) {
+            addDevice(myo);
+        }
+
+        @Override
+        public void onDisconnect(Myo myo, long timestamp) {
+            for (Device device : mDevices) {
+                if (device.mMyo == myo) {
+                    mDevices.remove(device);
+                }
+            }
+        }
+    }
+
+    public HapticService(Hub hub) {
+        mHub = hub;
+    }
+
+    /**
+     * Starts listening to device events and sending vibrations. Must be called from the main
+     * thread.
+     */
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mDevices.clear();
+        for (Myo myo : mHub.getConnectedDevices()) {
+            addDevice(myo);
+        }
+        mHub.addListener(mDeviceListener);
+
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Stops sending vibrations, discarding the pending ones. Must be called from the main thread.
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mHub.removeListener(mDeviceListener);
+        Thread thread = mThread;
+        mThread = null;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mPending.set(null);
+    }
+
+    /**
+     * Plays a single vibration on every connected device. Never blocks.
+     *
+     * @return false if a pattern waiting to be played was replaced.
+     */
+    public boolean vibrate(Myo.VibrationType type) {
+        return play(SINGLE_PULSES[type.ordinal()]);
+    }
+
+    /**
+     * Plays a vibration pattern on every connected device, replacing the pattern waiting to be
+     * played if any and cutting off the one playing. Never blocks.
+     *
+     * @return false if a pattern waiting to be played was replaced.
+     */
+    @Override
+    public boolean play(HapticPattern pattern) {
+        boolean replaced = mPending.getAndSet(pattern) != null;
+        Thread thread = mThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        if (replaced) {
+            mDroppedCommands.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if at least one device is connected.
+     */
+    public boolean hasConnectedDevice() {
+        return !mDevices.isEmpty();
+    }
+
+    /**
+     * Gets the number of patterns replaced by a newer one before being played.
+     */
+    public long getDroppedCommands() {
+        return mDroppedCommands.get();
+    }
+
+    /**
+     * Gets the number of vibrations sent to the devices, counting one per device and pulse.
+     */
+    public long getSentCommands() {
+        return mSentCommands.get();
+    }
+
+    private void addDevice(Myo myo) {
+        for (Device device : mDevices) {
+            if (device.mMyo == myo) {
+                return;
+            }
+        }
+        mDevices.add(new Device(myo));
+    }
+
+    private void runLoop() {
+        while (mRunning) {
+            HapticPattern pattern = mPending.getAndSet(null);
+            if (pattern == null) {
+                // Woken up by play and stop, or spuriously.
+                LockSupport.park(this);
+                continue;
+            }
+            for (int step = 0; step < pattern.getStepCount(); step++) {
+                if (!send(VIBRATION_TYPES[pattern.getPulse(step)])) {
+                    break;
+                }
+                if (step + 1 < pattern.getStepCount()
+                        && !pause(TimeUnit.MILLISECONDS.toNanos(pattern.getGapMs(step)))) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Vibrates every device, waiting for each one to be ready.
+     *
+     * @return false if a new pattern arrived or the service stopped before every device was
+     * vibrated.
+     */
+    private boolean send(Myo.VibrationType type) {
+        for (Device device : mDevices) {
+            long wait = device.mLastVibrationNanos + MIN_INTERVAL_NANOS - System.nanoTime();
+            if (wait > 0 && !pause(wait)) {
+                return false;
+            }
+            try {
+                device.mMyo.vibrate(type);
+                mSentCommands.incrementAndGet();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unable to vibrate " + device.mMyo.getName(), e);
+            }
+            device.mLastVibrationNanos = System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the given time, unless a new pattern arrives or the service stops.
+     *
+     * @return true if the whole time elapsed.
+     */
+    private boolean pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while (mRunning && mPending.get() == null
+                && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        return mRunning && mPending.get() == null;
+    }
+}
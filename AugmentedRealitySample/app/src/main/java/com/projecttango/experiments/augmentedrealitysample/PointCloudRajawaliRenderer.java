@@ -39,6 +39,8 @@ public class PointCloudRajawaliRenderer extends RajawaliRenderer {
     private static final float CAMERA_NEAR = 0.01f;
     private static final float CAMERA_FAR = 200f;
     private static final int MAX_NUMBER_OF_POINTS = 60000;
+    // Clouds with more points than this are decimated before being rendered.
+    private volatile int mPointBudget = MAX_NUMBER_OF_POINTS;
 
     private TouchViewHandler mTouchViewHandler;
     private DeviceExtrinsics mDeviceExtrinsics;
@@ -79,12 +81,20 @@ public class PointCloudRajawaliRenderer extends RajawaliRenderer {
         if (mDeviceExtrinsics != null) {
             Pose pointCloudPose =
                     ScenePoseCalculator.toDepthCameraOpenGlPose(devicePose, mDeviceExtrinsics);
-            mPointCloud.updateCloud(xyzIjData.xyzCount, xyzIjData.xyz);
+            mPointCloud.updateCloud(xyzIjData.xyzCount, xyzIjData.xyz, mPointBudget);
             mPointCloud.setPosition(pointCloudPose.getPosition());
             mPointCloud.setOrientation(pointCloudPose.getOrientation());
         }
     }
 
+    /**
+     * Limits the number of rendered points of each cloud, up to MAX_NUMBER_OF_POINTS, e.g. when
+     * rendering has to give way to other processing. Can be called from any thread.
+     */
+    public void setPointBudget(int pointBudget) {
+        mPointBudget = Math.max(1, Math.min(pointBudget, MAX_NUMBER_OF_POINTS));
+    }
+
     /**
      * Updates our information about the current device pose.
      * NOTE: This needs to be called from the OpenGL rendering thread.
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.experiments.augmentedrealitysample;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.util.Log;
+
+import com.projecttango.tangoutils.sonification.NotePlayer;
+
+/**
+ * Set of short samples loaded once into a <code>SoundPool</code> and played by note index.
+ *
+ * Samples are decoded asynchronously by the <code>SoundPool</code>; notes that haven't finished
+ * loading are silently skipped. Note indices map to sample ids through a plain
+ * <code>int[]</code>, so playing a note doesn't allocate and can be done from any thread.
+ */
+public class SoundBank implements NotePlayer, SoundPool.OnLoadCompleteListener {
+    private static final String TAG = SoundBank.class.getSimpleName();
+
+    private final SoundPool mSoundPool;
+    // SoundPool sample id of each note index.
+    private final int[] mSampleIds;
+    private final boolean[] mLoaded;
+    private volatile int mLoadedCount = 0;
+
+    /**
+     * Starts loading the given raw resources, one per note index.
+     *
+     * @param maxStreams Maximum number of notes playing at the same time.
+     */
+    public SoundBank(Context context, int maxStreams, int[] resourceIds) {
+        mSoundPool = new SoundPool(maxStreams, AudioManager.STREAM_MUSIC, 0);
+        mSoundPool.setOnLoadCompleteListener(this);
+        mSampleIds = new int[resourceIds.length];
+        mLoaded = new boolean[resourceIds.length];
+        for (int i = 0; i < resourceIds.length; i++) {
+            mSampleIds[i] = mSoundPool.load(context, resourceIds[i], 1);
+        }
+    }
+
+    @Override
+    public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+        if (status != 0) {
+            Log.e(TAG, "Unable to load sample " + sampleId + ", status: " + status);
+            return;
+        }
+        for (int i = 0; i < mSampleIds.length; i++) {
+            if (mSampleIds[i] == sampleId) {
+                mLoaded[i] = true;
+                // Also publishes mLoaded to the threads playing notes.
+                mLoadedCount++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plays a note if its sample is loaded. Note indices follow the order of the resources given
+     * to the constructor.
+     *
+     * @return the stream id, or 0 if the note couldn't be played.
+     */
+    @Override
+    public int play(int note, float leftVolume, float rightVolume, int priority, float rate) {
+        if (mLoadedCount == 0 || !mLoaded[note]) {
+            return 0;
+        }
+        return mSoundPool.play(mSampleIds[note], leftVolume, rightVolume, priority, 0, rate);
+    }
+
+    /**
+     * Returns true once every sample has been loaded.
+     */
+    public boolean isLoaded() {
+        return mLoadedCount == mSampleIds.length;
+    }
+
+    public int getNoteCount() {
+        return mSampleIds.length;
+    }
+
+    @Override
+    public void release() {
+        mSoundPool.release();
+    }
+}
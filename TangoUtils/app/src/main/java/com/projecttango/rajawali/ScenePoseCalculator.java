@@ -128,6 +128,27 @@ public final class ScenePoseCalculator {
         return matrixToPose(opengl_world_T_device);
     }
 
+    /**
+     * Allocation free version of <code>toOpenGLPose</code>, intended to be used in the render
+     * loop. Given a translation and a x, y, z, w rotation quaternion in start of service or area
+     * description frame, writes the corresponding position and orientation for a 3D object in the
+     * Rajawali world into outPosition and outOrientation.
+     */
+    public static void toOpenGLPose(double[] translation, double[] rotation,
+                                    Vector3 outPosition, Quaternion outOrientation) {
+        // OPENGL_T_TANGO_WORLD is a -90 degree rotation around X: (x, y, z) -> (x, z, -y).
+        outPosition.setAll(translation[0], translation[2], -translation[1]);
+
+        // Rotation of OPENGL_T_TANGO_WORLD pre-multiplied to the pose rotation:
+        // q = (w: cos(-45), x: sin(-45), 0, 0) * (w, x, y, z)
+        double c = Math.sqrt(0.5);
+        double x = rotation[0];
+        double y = rotation[1];
+        double z = rotation[2];
+        double w = rotation[3];
+        outOrientation.setAll(c * (w + x), c * (x - w), c * (y + z), c * (z - y));
+    }
+
     /**
      * Use Tango camera intrinsics to calculate the projection Matrix for the Rajawali scene.
      */
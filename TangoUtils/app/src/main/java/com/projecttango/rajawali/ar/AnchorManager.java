@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.rajawali.ar;
+
+import com.google.atap.tangoservice.TangoPoseData;
+import com.projecttango.rajawali.ScenePoseCalculator;
+import com.projecttango.tangoutils.PoseUpdateQueue;
+
+import org.rajawali3d.Object3D;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+/**
+ * Keeps a fixed number of AR objects anchored to poses in the Tango start of service frame.
+ *
+ * Pose updates are posted from a single producer thread (typically the UI thread) through a
+ * lock-free queue and applied in the OpenGL thread once per frame with
+ * <code>applyPendingUpdates</code>, so the two threads never block each other. The latest pose of
+ * every anchor is kept in primitive arrays and converted to the OpenGL world without allocating.
+ *
+ * Anchor objects are created lazily through an <code>ObjectFactory</code> the first time they
+ * receive a pose. Once every anchor is in use, new anchors reuse the oldest one.
+ */
+public class AnchorManager {
+    /**
+     * Creates the 3D object of an anchor and adds it to the scene. Called from the OpenGL thread.
+     */
+    public interface ObjectFactory {
+        Object3D createObject(int anchorId);
+    }
+
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final int mMaxAnchors;
+    private final ObjectFactory mFactory;
+    private final double mForwardOffset;
+    private final PoseUpdateQueue mQueue = new PoseUpdateQueue(QUEUE_CAPACITY);
+
+    // Only accessed by the producer thread.
+    private int mNextAnchor = 0;
+    private int mAnchorCount = 0;
+
+    // Only accessed by the OpenGL thread.
+    private final Object3D[] mObjects;
+    private final double[] mTranslations;
+    private final double[] mRotations;
+    private final double[] mTranslation = new double[3];
+    private final double[] mRotation = new double[4];
+    private final Vector3 mPosition = new Vector3();
+    private final Quaternion mOrientation = new Quaternion();
+
+    /**
+     * @param maxAnchors    Maximum number of anchored objects.
+     * @param forwardOffset Distance to move each object along its forward axis after placing it,
+     *                      e.g. half of its depth to make it flush with a fitted plane.
+     */
+    public AnchorManager(int maxAnchors, double forwardOffset, ObjectFactory factory) {
+        mMaxAnchors = maxAnchors;
+        mForwardOffset = forwardOffset;
+        mFactory = factory;
+        mObjects = new Object3D[maxAnchors];
+        mTranslations = new double[maxAnchors * 3];
+        mRotations = new double[maxAnchors * 4];
+    }
+
+    /**
+     * Places a new anchor at the given pose, reusing the oldest anchor once all of them are in
+     * use. Must be called from the producer thread.
+     *
+     * @return the id of the anchor, or -1 if the update queue is full.
+     */
+    public int addAnchor(TangoPoseData pose) {
+        int anchorId = mNextAnchor;
+        if (!updateAnchor(anchorId, pose)) {
+            return -1;
+        }
+        mNextAnchor = (mNextAnchor + 1) % mMaxAnchors;
+        mAnchorCount = Math.min(mAnchorCount + 1, mMaxAnchors);
+        return anchorId;
+    }
+
+    /**
+     * Moves an anchor to the given pose. Must be called from the producer thread.
+     *
+     * @return false if the update queue is full and the update was dropped.
+     */
+    public boolean updateAnchor(int anchorId, TangoPoseData pose) {
+        return mQueue.offer(anchorId, pose.translation, pose.rotation);
+    }
+
+    /**
+     * Gets the number of anchors placed so far, up to the maximum number of anchors.
+     * Must be called from the producer thread.
+     */
+    public int getAnchorCount() {
+        return mAnchorCount;
+    }
+
+    /**
+     * Applies every queued pose update to the anchor objects.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     *
+     * @return the number of updates applied.
+     */
+    public int applyPendingUpdates() {
+        int applied = 0;
+        int anchorId;
+        while ((anchorId = mQueue.poll(mTranslation, mRotation)) >= 0) {
+            System.arraycopy(mTranslation, 0, mTranslations, anchorId * 3, 3);
+            System.arraycopy(mRotation, 0, mRotations, anchorId * 4, 4);
+
+            Object3D object = mObjects[anchorId];
+            if (object == null) {
+                object = mObjects[anchorId] = mFactory.createObject(anchorId);
+            }
+            ScenePoseCalculator.toOpenGLPose(mTranslation, mRotation, mPosition, mOrientation);
+            object.setPosition(mPosition);
+            object.setOrientation(mOrientation);
+            if (mForwardOffset != 0) {
+                object.moveForward(mForwardOffset);
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Gets the object of an anchor, or null if it hasn't been placed yet.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    public Object3D getObject(int anchorId) {
+        return mObjects[anchorId];
+    }
+
+    /**
+     * Copies the latest applied pose of an anchor in start of service frame.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    public void getAnchorPose(int anchorId, double[] outTranslation, double[] outRotation) {
+        System.arraycopy(mTranslations, anchorId * 3, outTranslation, 0, 3);
+        System.arraycopy(mRotations, anchorId * 4, outRotation, 0, 4);
+    }
+}
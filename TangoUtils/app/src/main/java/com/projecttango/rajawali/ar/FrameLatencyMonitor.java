@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.rajawali.ar;
+
+import java.util.Arrays;
+
+/**
+ * Records how long each RGB camera frame takes to go from the Tango callback to the screen.
+ *
+ * For every rendered frame the System.nanoTime() of the color frame callback, the texture update,
+ * the camera pose query and the end of the draw pass are kept in a preallocated ring, and the
+ * latency of each stage relative to the callback is accumulated into fixed-bucket histograms.
+ * Frames that were signalled but overwritten before the renderer consumed them are counted as
+ * dropped.
+ *
+ * Recording happens in the OpenGL thread and doesn't allocate. The getters can be called from
+ * any thread and copy the data out.
+ */
+public class FrameLatencyMonitor {
+    public static final int STAGE_TEXTURE_UPDATE = 0;
+    public static final int STAGE_POSE_QUERY = 1;
+    public static final int STAGE_DRAW = 2;
+    public static final int STAGE_COUNT = 3;
+
+    // Histogram buckets are BUCKET_WIDTH_MS wide; the last one collects everything above.
+    public static final int BUCKET_WIDTH_MS = 2;
+    public static final int BUCKET_COUNT = 50;
+    // The last dropped frame bucket collects every frame with DROP_BUCKET_COUNT - 1 or more drops.
+    public static final int DROP_BUCKET_COUNT = 5;
+
+    private static final int RING_SIZE = 128;
+    private static final long NANOS_PER_MS = 1000000L;
+
+    // Per frame timestamps, indexed by frame number modulo RING_SIZE.
+    private final long[] mCallbackNanos = new long[RING_SIZE];
+    private final long[] mTextureNanos = new long[RING_SIZE];
+    private final long[] mPoseNanos = new long[RING_SIZE];
+    private final long[] mDrawNanos = new long[RING_SIZE];
+
+    // Per frame stage latency, used to keep a running mean over the ring.
+    private final long[][] mStageLatencyNanos = new long[STAGE_COUNT][RING_SIZE];
+    private final long[] mStageLatencySumNanos = new long[STAGE_COUNT];
+    private final int[] mStageSampleCount = new int[STAGE_COUNT];
+
+    private final int[][] mLatencyHistograms = new int[STAGE_COUNT][BUCKET_COUNT];
+    private final int[] mDroppedFrameHistogram = new int[DROP_BUCKET_COUNT];
+
+    private long mFrameCount = 0;
+    private long mDroppedFrameCount = 0;
+    // Ring index of the frame currently in flight, or -1 if it has already been drawn.
+    private int mCurrentFrame = -1;
+
+    public FrameLatencyMonitor() {
+        reset();
+    }
+
+    /**
+     * Starts tracking a new frame once its texture has been updated.
+     *
+     * @param callbackNanos System.nanoTime() of the Tango color frame callback.
+     * @param droppedFrames Number of frames signalled since the last update that were never
+     *                      rendered.
+     */
+    synchronized void onTextureUpdated(long callbackNanos, int droppedFrames) {
+        long now = System.nanoTime();
+        int frame = (int) (mFrameCount % RING_SIZE);
+        mCallbackNanos[frame] = callbackNanos;
+        mTextureNanos[frame] = now;
+        mPoseNanos[frame] = -1;
+        mDrawNanos[frame] = -1;
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            // Forget the stage latencies of the frame being overwritten in the ring.
+            long oldLatency = mStageLatencyNanos[stage][frame];
+            if (oldLatency >= 0) {
+                mStageLatencySumNanos[stage] -= oldLatency;
+                mStageSampleCount[stage]--;
+                mStageLatencyNanos[stage][frame] = -1;
+            }
+        }
+        mFrameCount++;
+        mCurrentFrame = frame;
+
+        mDroppedFrameCount += droppedFrames;
+        mDroppedFrameHistogram[Math.min(droppedFrames, DROP_BUCKET_COUNT - 1)]++;
+        recordStage(STAGE_TEXTURE_UPDATE, frame, now - callbackNanos);
+    }
+
+    /**
+     * Marks the moment the scene camera pose was updated for the frame in flight.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    public synchronized void onPoseQueried() {
+        if (mCurrentFrame >= 0 && mPoseNanos[mCurrentFrame] < 0) {
+            long now = System.nanoTime();
+            mPoseNanos[mCurrentFrame] = now;
+            recordStage(STAGE_POSE_QUERY, mCurrentFrame, now - mCallbackNanos[mCurrentFrame]);
+        }
+    }
+
+    /**
+     * Marks the end of the draw pass for the frame in flight.
+     */
+    synchronized void onFrameDrawn() {
+        if (mCurrentFrame >= 0) {
+            long now = System.nanoTime();
+            mDrawNanos[mCurrentFrame] = now;
+            recordStage(STAGE_DRAW, mCurrentFrame, now - mCallbackNanos[mCurrentFrame]);
+            mCurrentFrame = -1;
+        }
+    }
+
+    private void recordStage(int stage, int frame, long latencyNanos) {
+        mStageLatencyNanos[stage][frame] = latencyNanos;
+        mStageLatencySumNanos[stage] += latencyNanos;
+        mStageSampleCount[stage]++;
+
+        int bucket = (int) (latencyNanos / NANOS_PER_MS / BUCKET_WIDTH_MS);
+        mLatencyHistograms[stage][Math.max(0, Math.min(bucket, BUCKET_COUNT - 1))]++;
+    }
+
+    /**
+     * Copies the latency histogram of the given stage, relative to the frame callback, into out.
+     * Bucket i counts frames with a latency between i * BUCKET_WIDTH_MS and
+     * (i + 1) * BUCKET_WIDTH_MS milliseconds.
+     *
+     * @param stage One of the STAGE_ constants.
+     * @param out   Array of at least BUCKET_COUNT elements.
+     */
+    public synchronized void getLatencyHistogram(int stage, int[] out) {
+        System.arraycopy(mLatencyHistograms[stage], 0, out, 0, BUCKET_COUNT);
+    }
+
+    /**
+     * Copies the histogram of dropped frames into out. Bucket i counts rendered frames that
+     * overwrote i unconsumed frames before them.
+     *
+     * @param out Array of at least DROP_BUCKET_COUNT elements.
+     */
+    public synchronized void getDroppedFrameHistogram(int[] out) {
+        System.arraycopy(mDroppedFrameHistogram, 0, out, 0, DROP_BUCKET_COUNT);
+    }
+
+    /**
+     * Gets the mean latency in seconds of the given stage over the last rendered frames, or 0 if
+     * no frame has been measured yet.
+     */
+    public synchronized double getMeanLatency(int stage) {
+        int count = mStageSampleCount[stage];
+        return count == 0 ? 0 : mStageLatencySumNanos[stage] / (double) count / 1e9;
+    }
+
+    /**
+     * Copies the callback, texture update, pose query and draw timestamps (System.nanoTime()) of
+     * the most recently drawn frame into out. Stages that didn't happen are set to -1.
+     *
+     * @param out Array of at least 4 elements.
+     * @return false if no frame has been drawn yet.
+     */
+    public synchronized boolean getLastFrameTimestamps(long[] out) {
+        if (mFrameCount == 0) {
+            return false;
+        }
+        int frame = (int) ((mFrameCount - 1) % RING_SIZE);
+        if (mDrawNanos[frame] < 0 && mFrameCount > 1) {
+            // The newest frame is still in flight, report the one before it.
+            frame = (frame + RING_SIZE - 1) % RING_SIZE;
+        }
+        out[0] = mCallbackNanos[frame];
+        out[1] = mTextureNanos[frame];
+        out[2] = mPoseNanos[frame];
+        out[3] = mDrawNanos[frame];
+        return true;
+    }
+
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public synchronized long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    /**
+     * Clears all the recorded frames and histograms.
+     */
+    public synchronized void reset() {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            Arrays.fill(mLatencyHistograms[stage], 0);
+            Arrays.fill(mStageLatencyNanos[stage], -1);
+            mStageLatencySumNanos[stage] = 0;
+            mStageSampleCount[stage] = 0;
+        }
+        Arrays.fill(mDroppedFrameHistogram, 0);
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mCurrentFrame = -1;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.rajawali.ar;
+
+import android.opengl.GLSurfaceView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free render-on-demand scheduler shared between a <code>TangoRajawaliView</code> and its
+ * <code>TangoRajawaliRenderer</code>.
+ *
+ * The Tango callback thread only bumps an atomic frame counter and timestamp, and the OpenGL
+ * thread consumes them at the start of each frame, so neither thread ever waits on the other.
+ * Render requests are coalesced: while a render is already requested and hasn't started yet,
+ * further requests (new RGB frames or scene changes such as a moved AR object) are dropped.
+ * A frame divisor can also skip the render of some RGB frames to save time under load; the
+ * skipped frames are then reported as dropped by the <code>FrameLatencyMonitor</code>.
+ */
+public class RenderScheduler {
+    private final GLSurfaceView mView;
+
+    // Number of RGB frames signalled by Tango since the renderer last consumed them.
+    private final AtomicInteger mPendingFrames = new AtomicInteger();
+    // System.nanoTime() of the last RGB frame callback.
+    private final AtomicLong mLastFrameNanos = new AtomicLong(-1);
+    // True while a render has been requested from the view but not yet started.
+    private final AtomicBoolean mRenderRequested = new AtomicBoolean(false);
+    // Only every mFrameDivisor-th RGB frame requests a render.
+    private volatile int mFrameDivisor = 1;
+    // Only accessed by the Tango callback thread.
+    private int mFramesSinceRender = 0;
+
+    public RenderScheduler(GLSurfaceView view) {
+        mView = view;
+    }
+
+    /**
+     * Signals that a new RGB frame is available. Called from the Tango callback thread.
+     */
+    public void onFrameAvailable() {
+        mLastFrameNanos.set(System.nanoTime());
+        mPendingFrames.incrementAndGet();
+        if (++mFramesSinceRender >= mFrameDivisor) {
+            mFramesSinceRender = 0;
+            requestRender();
+        }
+    }
+
+    /**
+     * Only renders one RGB frame out of <code>frameDivisor</code>. Safe to call from any thread.
+     */
+    public void setFrameDivisor(int frameDivisor) {
+        mFrameDivisor = Math.max(1, frameDivisor);
+    }
+
+    /**
+     * Requests a render pass unless one is already pending. Safe to call from any thread, e.g.
+     * when an AR object has moved and the scene needs to be redrawn without a new RGB frame.
+     */
+    public void requestRender() {
+        if (mRenderRequested.compareAndSet(false, true)) {
+            mView.requestRender();
+        }
+    }
+
+    /**
+     * Intended to be called from the OpenGL thread at the beginning of a frame. Any request made
+     * after this point will schedule a new render pass.
+     */
+    void onRenderStarted() {
+        mRenderRequested.set(false);
+    }
+
+    /**
+     * Intended to be called from the OpenGL thread. Returns the number of RGB frames that arrived
+     * since the last call, so anything greater than one means frames were overwritten before
+     * being rendered.
+     */
+    int consumePendingFrames() {
+        return mPendingFrames.getAndSet(0);
+    }
+
+    /**
+     * Gets the System.nanoTime() of the last RGB frame callback, or -1 if there was none yet.
+     */
+    public long getLastFrameNanos() {
+        return mLastFrameNanos.get();
+    }
+}
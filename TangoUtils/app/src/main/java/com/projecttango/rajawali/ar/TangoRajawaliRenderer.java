@@ -27,6 +27,7 @@ import com.google.atap.tangoservice.TangoPoseData;
 import com.projecttango.rajawali.DeviceExtrinsics;
 import com.projecttango.rajawali.Pose;
 import com.projecttango.rajawali.ScenePoseCalculator;
+import com.projecttango.rajawali.renderables.PerformanceHud;
 
 import org.rajawali3d.materials.Material;
 import org.rajawali3d.materials.textures.ATexture;
@@ -54,6 +55,8 @@ import javax.microedition.khronos.opengles.GL10;
  *    from the background.
  *  - In most cases the Rajawali camera will not be handled by the user since it is automatically
  *    handled by this mRenderer.
+ *  - A <code>PerformanceHud</code> showing the render frame rate and camera to display latency
+ *    can be enabled with <code>showPerformanceHud</code>, and extended with application values.
  */
 public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
     private static final String TAG = TangoRajawaliRenderer.class.getSimpleName();
@@ -69,12 +72,22 @@ public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
 
     private Tango mTango;
     private int mCameraId;
-    private boolean mUpdatePending = false;
+    private volatile RenderScheduler mRenderScheduler;
+    private volatile int mRenderFrameDivisor = 1;
+    private final FrameLatencyMonitor mLatencyMonitor = new FrameLatencyMonitor();
     private int mConnectedTextureId = -1;
-    private double mLastRGBFrameTimestamp = -1;
+    // Written in the OpenGL thread, read from any thread.
+    private volatile double mLastRGBFrameTimestamp = -1;
     private boolean mIsCameraConfigured = false;
     private Matrix4 mProjectionMatrix;
 
+    private volatile PerformanceHud mPerformanceHud;
+    // Only accessed by the OpenGL thread.
+    private boolean mIsHudAttached = false;
+    private long mRenderedFrameCount = 0;
+    private int mSurfaceWidth = 1;
+    private int mSurfaceHeight = 1;
+
     public TangoRajawaliRenderer(Context context) {
         super(context);
     }
@@ -99,18 +112,27 @@ public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
             e.printStackTrace();
         }
         getCurrentScene().addChildAt(mBackgroundQuad, 0);
+        // The scene is rebuilt, e.g. after the OpenGL context was lost.
+        mIsHudAttached = false;
     }
 
     @Override
     protected void onRender(long elapsedRealTime, double deltaTime) {
+        if (mRenderScheduler != null) {
+            mRenderScheduler.onRenderStarted();
+        }
+        // NOTE: This only contends with connectCamera and disconnectCamera. New RGB frames are
+        // signalled through the lock-free RenderScheduler.
         synchronized (this) {
             // mTango != null is used to indicate that a Tango device is connected to this
             // renderer, via a corresponding TangoRajawaliView
-            if (mTango != null) {
+            if (mTango != null && mRenderScheduler != null) {
                 try {
-                    if (mUpdatePending) {
+                    int pendingFrames = mRenderScheduler.consumePendingFrames();
+                    if (pendingFrames > 0) {
                         mLastRGBFrameTimestamp = updateTexture();
-                        mUpdatePending = false;
+                        mLatencyMonitor.onTextureUpdated(
+                                mRenderScheduler.getLastFrameNanos(), pendingFrames - 1);
                     }
                     if (!mIsCameraConfigured) {
                         getCurrentCamera().setProjectionMatrix(mProjectionMatrix);
@@ -124,7 +146,54 @@ public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
             }
         }
 
+        updatePerformanceHud();
         super.onRender(elapsedRealTime, deltaTime);
+        mLatencyMonitor.onFrameDrawn();
+        mRenderedFrameCount++;
+    }
+
+    private void updatePerformanceHud() {
+        PerformanceHud hud = mPerformanceHud;
+        if (hud == null) {
+            return;
+        }
+        if (!mIsHudAttached) {
+            // Added last so that it is drawn on top of the camera background.
+            getCurrentScene().addChild(hud.createQuad());
+            hud.setViewportSize(mSurfaceWidth, mSurfaceHeight);
+            mIsHudAttached = true;
+        }
+        if (hud.update(System.nanoTime())) {
+            getTextureManager().replaceTexture(hud.getTexture());
+        }
+    }
+
+    /**
+     * Shows an overlay with the render frame rate and the mean latency between the Tango color
+     * frame callbacks and the end of their draw pass. More lines can be added to the returned
+     * HUD, e.g. application processing times. Can be called from any thread; subsequent calls
+     * return the same HUD.
+     *
+     * @param textSizePx Height of the HUD text, in pixels.
+     */
+    public synchronized PerformanceHud showPerformanceHud(float textSizePx) {
+        if (mPerformanceHud == null) {
+            PerformanceHud hud = new PerformanceHud(textSizePx);
+            hud.addRateLine("render fps", new PerformanceHud.Value() {
+                @Override
+                public double get() {
+                    return mRenderedFrameCount;
+                }
+            });
+            hud.addLine("latency ms", 1, new PerformanceHud.Value() {
+                @Override
+                public double get() {
+                    return mLatencyMonitor.getMeanLatency(FrameLatencyMonitor.STAGE_DRAW) * 1000;
+                }
+            });
+            mPerformanceHud = hud;
+        }
+        return mPerformanceHud;
     }
 
     /**
@@ -188,8 +257,31 @@ public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
     /**
      * Intended to be called from <code>TangoRajawaliView</code>.
      */
-    synchronized void onTangoFrameAvailable() {
-        mUpdatePending = true;
+    void setRenderScheduler(RenderScheduler renderScheduler) {
+        renderScheduler.setFrameDivisor(mRenderFrameDivisor);
+        mRenderScheduler = renderScheduler;
+    }
+
+    /**
+     * Only renders one RGB frame out of <code>frameDivisor</code>, e.g. to leave more time to
+     * other processing when the device can't keep up. Can be called from any thread.
+     */
+    public void setRenderFrameDivisor(int frameDivisor) {
+        mRenderFrameDivisor = frameDivisor;
+        RenderScheduler renderScheduler = mRenderScheduler;
+        if (renderScheduler != null) {
+            renderScheduler.setFrameDivisor(frameDivisor);
+        }
+    }
+
+    /**
+     * Requests a new render pass without waiting for a new RGB frame, e.g. after an AR object has
+     * been moved. Redundant requests are coalesced, so this is cheap to call from any thread.
+     */
+    protected void requestSceneRender() {
+        if (mRenderScheduler != null) {
+            mRenderScheduler.requestRender();
+        }
     }
 
     /**
@@ -199,14 +291,29 @@ public abstract class TangoRajawaliRenderer extends RajawaliRenderer {
      * @return The timestamp. This can be used to associate camera data with a
      * pose or other sensor data using other pieces of the Tango API.
      */
-    synchronized public double getTimestamp() {
+    public double getTimestamp() {
         return mLastRGBFrameTimestamp;
     }
 
+    /**
+     * Gets the monitor tracking the latency between Tango color frame callbacks and the rendered
+     * frames. Subclasses should call <code>onPoseQueried()</code> on it when updating the scene
+     * camera pose.
+     */
+    public FrameLatencyMonitor getLatencyMonitor() {
+        return mLatencyMonitor;
+    }
+
     @Override
     public void onRenderSurfaceSizeChanged(GL10 gl, int width, int height) {
         super.onRenderSurfaceSizeChanged(gl, width, height);
         // The camera projection matrix gets reset whenever the render surface is changed
         mIsCameraConfigured = false;
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        PerformanceHud hud = mPerformanceHud;
+        if (hud != null) {
+            hud.setViewportSize(width, height);
+        }
     }
 }
@@ -32,6 +32,7 @@ import org.rajawali3d.surface.RajawaliSurfaceView;
 public class TangoRajawaliView extends RajawaliSurfaceView {
     private static final String TAG = "TangoRajawaliView";
     TangoRajawaliRenderer mRenderer;
+    private final RenderScheduler mRenderScheduler = new RenderScheduler(this);
 
     public TangoRajawaliView(Context context) {
         super(context);
@@ -57,6 +58,7 @@ public class TangoRajawaliView extends RajawaliSurfaceView {
     public void setSurfaceRenderer(TangoRajawaliRenderer renderer) throws IllegalStateException {
         super.setSurfaceRenderer(renderer);
         this.mRenderer = renderer;
+        renderer.setRenderScheduler(mRenderScheduler);
     }
 
     /**
@@ -78,10 +80,19 @@ public class TangoRajawaliView extends RajawaliSurfaceView {
      * Call this method from the onFrameAvailable() method of
      * Tango.OnTangoUpdateListener, which provides a set of callbacks for
      * getting updates from the Project Tango sensors.
+     *
+     * This doesn't block: it only flags the frame as pending and requests a render pass if one
+     * isn't already scheduled.
+     */
+    public void onFrameAvailable() {
+        mRenderScheduler.onFrameAvailable();
+    }
+
+    /**
+     * Gets the scheduler used to trigger render passes for this view.
      */
-    public synchronized void onFrameAvailable() {
-        mRenderer.onTangoFrameAvailable();
-        requestRender();
+    public RenderScheduler getRenderScheduler() {
+        return mRenderScheduler;
     }
 
     /**
@@ -17,48 +17,74 @@ package com.projecttango.rajawali.renderables;
 
 import android.graphics.Color;
 
+import com.projecttango.rajawali.renderables.primitives.Lines;
+
 import org.rajawali3d.materials.Material;
-import org.rajawali3d.math.vector.Vector3;
-import org.rajawali3d.primitives.Line3D;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Stack;
 
 /**
  *A primitive which represents a combination of Frustum and Axes.
+ * The geometry is stored as GL_LINES segments in flat arrays, so several frustums (e.g. a pose
+ * history) can be batched into a single <code>Lines</code> object by copying
+ * {@link #getVertices()} and {@link #getColors()} once per pose.
  */
-public class FrustumAxes extends Line3D {
+public class FrustumAxes extends Lines {
     private static final float FRUSTUM_WIDTH = 0.8f;
     private static final float FRUSTUM_HEIGHT = 0.6f;
     private static final float FRUSTUM_DEPTH = 0.5f;
 
+    // Vertices of the axes and frustum, two per segment.
+    private static final float[] VERTICES = makePoints();
+    // RGBA color of each vertex in VERTICES.
+    private static final float[] COLORS = makeColors();
+    public static final int VERTEX_COUNT = VERTICES.length / 3;
+
     public FrustumAxes(float thickness) {
-        super(makePoints(), thickness, makeColors());
+        super(VERTICES, COLORS, thickness);
         Material material = new Material();
         material.useVertexColors(true);
         setMaterial(material);
     }
 
-    private static Stack<Vector3> makePoints() {
-        Vector3 o = new Vector3(0, 0, 0);
-        Vector3 a = new Vector3(-FRUSTUM_WIDTH / 2f, FRUSTUM_HEIGHT / 2f, -FRUSTUM_DEPTH);
-        Vector3 b = new Vector3(FRUSTUM_WIDTH / 2f, FRUSTUM_HEIGHT / 2f, -FRUSTUM_DEPTH);
-        Vector3 c = new Vector3(FRUSTUM_WIDTH / 2f, -FRUSTUM_HEIGHT / 2f, -FRUSTUM_DEPTH);
-        Vector3 d = new Vector3(-FRUSTUM_WIDTH / 2f, -FRUSTUM_HEIGHT / 2f, -FRUSTUM_DEPTH);
-
-        Vector3 x = new Vector3(1, 0, 0);
-        Vector3 y = new Vector3(0, 1, 0);
-        Vector3 z = new Vector3(0, 0, 1);
+    /**
+     * Gets a copy of the vertices of the axes and frustum, two per segment.
+     */
+    public static float[] getVertices() {
+        return VERTICES.clone();
+    }
 
-        Stack<Vector3> points = new Stack<Vector3>();
-        Collections.addAll(points, o, x, o, y, o, z, o, a, b, o, b, c, o, c, d, o, d, a);
+    /**
+     * Gets a copy of the RGBA color of each vertex.
+     */
+    public static float[] getColors() {
+        return COLORS.clone();
+    }
 
-        return points;
+    private static float[] makePoints() {
+        float w = FRUSTUM_WIDTH / 2f;
+        float h = FRUSTUM_HEIGHT / 2f;
+        float d = -FRUSTUM_DEPTH;
+        return new float[] {
+                // Axes
+                0, 0, 0, 1, 0, 0,
+                0, 0, 0, 0, 1, 0,
+                0, 0, 0, 0, 0, 1,
+                // Frustum sides
+                0, 0, 0, -w, h, d,
+                0, 0, 0, w, h, d,
+                0, 0, 0, w, -h, d,
+                0, 0, 0, -w, -h, d,
+                // Frustum base
+                -w, h, d, w, h, d,
+                w, h, d, w, -h, d,
+                w, -h, d, -w, -h, d,
+                -w, -h, d, -w, h, d
+        };
     }
 
-    private static int[] makeColors() {
-        int[] colors = new int[18];
+    private static float[] makeColors() {
+        int[] colors = new int[VERTICES.length / 3];
         Arrays.fill(colors, Color.BLACK);
         colors[0] = Color.RED;
         colors[1] = Color.RED;
@@ -66,6 +92,14 @@ public class FrustumAxes extends Line3D {
         colors[3] = Color.GREEN;
         colors[4] = Color.BLUE;
         colors[5] = Color.BLUE;
-        return colors;
+
+        float[] rgba = new float[colors.length * 4];
+        for (int i = 0; i < colors.length; i++) {
+            rgba[i * 4] = Color.red(colors[i]) / 255f;
+            rgba[i * 4 + 1] = Color.green(colors[i]) / 255f;
+            rgba[i * 4 + 2] = Color.blue(colors[i]) / 255f;
+            rgba[i * 4 + 3] = Color.alpha(colors[i]) / 255f;
+        }
+        return rgba;
     }
 }
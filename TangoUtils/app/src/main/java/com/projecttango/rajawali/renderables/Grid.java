@@ -15,47 +15,53 @@
  */
 package com.projecttango.rajawali.renderables;
 
-import android.opengl.GLES20;
+import com.projecttango.rajawali.renderables.primitives.Lines;
 
 import org.rajawali3d.materials.Material;
-import org.rajawali3d.math.vector.Vector3;
-import org.rajawali3d.primitives.Line3D;
-
-import java.util.Stack;
 
 /**
  * Rajawali object which represents the 'floor' of the current scene.
  * This is a static grid placed in the scene to provide perspective in the
  * various views.
+ * The grid lines are generated straight into a flat vertex array and drawn in a single
+ * GL_LINES call.
  */
-public class Grid extends Line3D {
+public class Grid extends Lines {
     public Grid(int size, int step, float thickness, int color) {
-        super(calculatePoints(size, step), thickness, color);
+        super(calculatePoints(size, step), null, thickness);
         Material material = new Material();
         material.setColor(color);
         this.setMaterial(material);
     }
-    private static Stack<Vector3> calculatePoints(int size, int step) {
-        Stack<Vector3> points = new Stack<Vector3>();
 
+    private static float[] calculatePoints(int size, int step) {
+        float half = size / 2f;
+        int linesPerAxis = size / step + 1;
+        float[] points = new float[linesPerAxis * 2 * 2 * 3];
+
+        int p = 0;
         // Rows
-        for (float i = -size / 2f; i <= size / 2f; i += step) {
-            points.add(new Vector3(i, 0 ,-size / 2f));
-            points.add(new Vector3(i, 0, size / 2f));
+        for (int line = 0; line < linesPerAxis; line++) {
+            float i = -half + line * step;
+            points[p++] = i;
+            points[p++] = 0;
+            points[p++] = -half;
+            points[p++] = i;
+            points[p++] = 0;
+            points[p++] = half;
         }
 
         // Columns
-        for (float i = -size / 2f; i <= size / 2f; i += step) {
-            points.add(new Vector3(-size / 2f, 0, i));
-            points.add(new Vector3(size / 2f, 0, i));
+        for (int line = 0; line < linesPerAxis; line++) {
+            float i = -half + line * step;
+            points[p++] = -half;
+            points[p++] = 0;
+            points[p++] = i;
+            points[p++] = half;
+            points[p++] = 0;
+            points[p++] = i;
         }
 
         return points;
     }
-
-    @Override
-    protected void init(boolean createVBOs) {
-        super.init(createVBOs);
-        setDrawingMode(GLES20.GL_LINES);
-    }
 }
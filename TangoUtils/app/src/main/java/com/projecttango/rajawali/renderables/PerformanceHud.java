@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.rajawali.renderables;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.textures.ATexture;
+import org.rajawali3d.materials.textures.Texture;
+import org.rajawali3d.primitives.ScreenQuad;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text overlay showing a few live values, e.g. frame rates and processing times, in the top left
+ * corner of the screen.
+ *
+ * Every printable ASCII glyph is rasterized once into an atlas bitmap. Refreshing the overlay
+ * copies the glyphs of each line into a preallocated bitmap which is then uploaded to the
+ * texture of a <code>ScreenQuad</code>, at most once per update period. Values are formatted
+ * into char arrays, so a refresh doesn't allocate and the overlay barely disturbs what it
+ * measures.
+ *
+ * Lines can be added from any thread. The quad is created, updated and resized in the OpenGL
+ * thread.
+ */
+public class PerformanceHud {
+    /**
+     * Source of the value shown on a line. Called from the OpenGL thread.
+     */
+    public interface Value {
+        double get();
+    }
+
+    public static final int MAX_LINES = 8;
+    public static final int COLUMNS = 24;
+    public static final long DEFAULT_UPDATE_PERIOD_MS = 250;
+
+    private static final char FIRST_GLYPH = ' ';
+    private static final char LAST_GLYPH = '~';
+    private static final int ATLAS_COLUMNS = 16;
+    private static final int TEXT_COLOR = 0xffffffff;
+    private static final int BACKGROUND_COLOR = 0x80000000;
+    // Width of the overlay and margin to the top left corner, as fractions of the screen width.
+    private static final float SCREEN_WIDTH_FRACTION = 0.4f;
+    private static final float SCREEN_MARGIN = 0.02f;
+    // Enough for the digits of any long.
+    private static final int MAX_DIGITS = 20;
+
+    private final long mUpdatePeriodNanos;
+    private final int mGlyphWidth;
+    private final int mGlyphHeight;
+    private final Bitmap mAtlas;
+    private final Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private final Paint mBackgroundPaint = new Paint();
+    private final Rect mSource = new Rect();
+    private final Rect mDestination = new Rect();
+    private final char[] mDigits = new char[MAX_DIGITS];
+
+    // Guarded by this.
+    private int mLineCount = 0;
+    private final char[][] mText = new char[MAX_LINES][COLUMNS];
+    private final int[] mLabelLengths = new int[MAX_LINES];
+    private final int[] mDecimals = new int[MAX_LINES];
+    private final boolean[] mIsRate = new boolean[MAX_LINES];
+    private final Value[] mValues = new Value[MAX_LINES];
+    private final double[] mLastCounts = new double[MAX_LINES];
+
+    // Only accessed by the OpenGL thread.
+    private long mLastUpdateNanos = 0;
+    private boolean mHasSample = false;
+    private ScreenQuad mQuad;
+    private Texture mTexture;
+    private int mViewportWidth = 1;
+    private int mViewportHeight = 1;
+
+    public PerformanceHud(float textSizePx) {
+        this(textSizePx, DEFAULT_UPDATE_PERIOD_MS);
+    }
+
+    /**
+     * @param textSizePx     Height of the text in the bitmap, in pixels.
+     * @param updatePeriodMs Minimum time between two refreshes of the overlay.
+     */
+    public PerformanceHud(float textSizePx, long updatePeriodMs) {
+        mUpdatePeriodNanos = TimeUnit.MILLISECONDS.toNanos(updatePeriodMs);
+
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        textPaint.setTextSize(textSizePx);
+        textPaint.setColor(TEXT_COLOR);
+        Paint.FontMetricsInt metrics = textPaint.getFontMetricsInt();
+        mGlyphWidth = (int) Math.ceil(textPaint.measureText("M"));
+        mGlyphHeight = metrics.descent - metrics.ascent;
+
+        int glyphCount = LAST_GLYPH - FIRST_GLYPH + 1;
+        int atlasRows = (glyphCount + ATLAS_COLUMNS - 1) / ATLAS_COLUMNS;
+        mAtlas = Bitmap.createBitmap(ATLAS_COLUMNS * mGlyphWidth, atlasRows * mGlyphHeight,
+                Bitmap.Config.ARGB_8888);
+        Canvas atlasCanvas = new Canvas(mAtlas);
+        char[] glyph = new char[1];
+        for (int i = 0; i < glyphCount; i++) {
+            glyph[0] = (char) (FIRST_GLYPH + i);
+            atlasCanvas.drawText(glyph, 0, 1, (i % ATLAS_COLUMNS) * mGlyphWidth,
+                    (i / ATLAS_COLUMNS) * mGlyphHeight - metrics.ascent, textPaint);
+        }
+
+        mBitmap = Bitmap.createBitmap(COLUMNS * mGlyphWidth, MAX_LINES * mGlyphHeight,
+                Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBackgroundPaint.setColor(BACKGROUND_COLOR);
+    }
+
+    /**
+     * Adds a line showing a value with the given number of decimals.
+     *
+     * @throws IllegalStateException if there are already MAX_LINES lines.
+     */
+    public void addLine(String label, int decimals, Value value) {
+        addLine(label, decimals, false, value);
+    }
+
+    /**
+     * Adds a line showing how many times per second a monotonic count increases, e.g. a frame
+     * counter. The rate is computed between two refreshes.
+     *
+     * @throws IllegalStateException if there are already MAX_LINES lines.
+     */
+    public void addRateLine(String label, Value count) {
+        addLine(label, 1, true, count);
+    }
+
+    private synchronized void addLine(String label, int decimals, boolean isRate, Value value) {
+        if (mLineCount == MAX_LINES) {
+            throw new IllegalStateException("The HUD already has " + MAX_LINES + " lines");
+        }
+        int line = mLineCount++;
+        // Keep at least a few columns for the value.
+        int labelLength = Math.min(label.length(), COLUMNS / 2);
+        label.getChars(0, labelLength, mText[line], 0);
+        mText[line][labelLength] = ' ';
+        mLabelLengths[line] = labelLength + 1;
+        mDecimals[line] = decimals;
+        mIsRate[line] = isRate;
+        mValues[line] = value;
+        mHasSample = false;
+    }
+
+    /**
+     * Creates the quad showing the overlay, to be added to the scene. Subsequent calls create a
+     * new quad, e.g. after the OpenGL context has been recreated.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    public ScreenQuad createQuad() {
+        mQuad = new ScreenQuad();
+        mTexture = new Texture("performanceHud", mBitmap);
+        mTexture.setMipmap(false);
+        Material material = new Material();
+        material.setColorInfluence(0);
+        try {
+            material.addTexture(mTexture);
+        } catch (ATexture.TextureException e) {
+            e.printStackTrace();
+        }
+        mQuad.setMaterial(material);
+        mQuad.setTransparent(true);
+        updateLayout();
+        return mQuad;
+    }
+
+    /**
+     * Gets the texture the overlay is drawn into, to be replaced in the texture manager whenever
+     * <code>update</code> returns true.
+     */
+    public Texture getTexture() {
+        return mTexture;
+    }
+
+    /**
+     * Keeps the overlay in the top left corner with a constant aspect ratio.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     */
+    public void setViewportSize(int width, int height) {
+        mViewportWidth = Math.max(width, 1);
+        mViewportHeight = Math.max(height, 1);
+        updateLayout();
+    }
+
+    private void updateLayout() {
+        if (mQuad == null) {
+            return;
+        }
+        // The screen quad spans -0.5 to 0.5 in both directions.
+        float scaleX = SCREEN_WIDTH_FRACTION;
+        float scaleY = scaleX * mViewportWidth * mBitmap.getHeight()
+                / (mBitmap.getWidth() * (float) mViewportHeight);
+        float margin = SCREEN_MARGIN;
+        float marginY = margin * mViewportWidth / mViewportHeight;
+        mQuad.setScale(scaleX, scaleY, 1);
+        mQuad.setPosition(-0.5 + margin + scaleX / 2, 0.5 - marginY - scaleY / 2, 0);
+    }
+
+    /**
+     * Samples every value and redraws the overlay if the update period has elapsed.
+     * NOTE: This needs to be called from the OpenGL rendering thread.
+     *
+     * @return true if the overlay was redrawn and its texture needs to be replaced.
+     */
+    public synchronized boolean update(long nowNanos) {
+        if (mQuad == null || (mHasSample && nowNanos - mLastUpdateNanos < mUpdatePeriodNanos)) {
+            return false;
+        }
+        double seconds = (nowNanos - mLastUpdateNanos) / 1e9;
+        mBitmap.eraseColor(0);
+        for (int line = 0; line < mLineCount; line++) {
+            double value = mValues[line].get();
+            if (mIsRate[line]) {
+                double count = value;
+                value = mHasSample && seconds > 0 ? (count - mLastCounts[line]) / seconds : 0;
+                mLastCounts[line] = count;
+            }
+            int length = formatValue(value, mDecimals[line], mText[line], mLabelLengths[line]);
+            drawLine(line, length);
+        }
+        mLastUpdateNanos = nowNanos;
+        mHasSample = true;
+        return true;
+    }
+
+    private void drawLine(int line, int length) {
+        int top = line * mGlyphHeight;
+        mCanvas.drawRect(0, top, length * mGlyphWidth, top + mGlyphHeight, mBackgroundPaint);
+        char[] text = mText[line];
+        for (int column = 0; column < length; column++) {
+            char c = text[column];
+            int glyph = (c < FIRST_GLYPH || c > LAST_GLYPH ? '?' : c) - FIRST_GLYPH;
+            int x = (glyph % ATLAS_COLUMNS) * mGlyphWidth;
+            int y = (glyph / ATLAS_COLUMNS) * mGlyphHeight;
+            mSource.set(x, y, x + mGlyphWidth, y + mGlyphHeight);
+            mDestination.set(column * mGlyphWidth, top, (column + 1) * mGlyphWidth,
+                    top + mGlyphHeight);
+            mCanvas.drawBitmap(mAtlas, mSource, mDestination, null);
+        }
+    }
+
+    /**
+     * Writes a number with a fixed number of decimals, truncated to the line width.
+     *
+     * @return the length of the line.
+     */
+    private int formatValue(double value, int decimals, char[] out, int offset) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out[offset] = '-';
+            return offset + 1;
+        }
+        int position = offset;
+        if (value < 0) {
+            out[position++] = '-';
+            value = -value;
+        }
+        long scaled = Math.round(value * Math.pow(10, decimals));
+        int digitCount = 0;
+        do {
+            mDigits[digitCount++] = (char) ('0' + scaled % 10);
+            scaled /= 10;
+        } while ((scaled > 0 || digitCount <= decimals) && digitCount < MAX_DIGITS);
+        for (int i = digitCount - 1; i >= 0 && position < COLUMNS; i--) {
+            out[position++] = mDigits[i];
+            if (i == decimals && decimals > 0 && position < COLUMNS) {
+                out[position++] = '.';
+            }
+        }
+        return position;
+    }
+}
@@ -1,11 +1,12 @@
 package com.projecttango.rajawali.renderables;
 
-import android.graphics.Color;
-
 import com.projecttango.rajawali.renderables.primitives.Points;
+import com.projecttango.tangoutils.DepthColorizer;
 
 import org.rajawali3d.materials.Material;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
 /**
@@ -17,14 +18,16 @@ public class PointCloud extends Points {
     public static final float CLOUD_MAX_Z = 5;
 
     private float[] mColorArray;
-    private final int[] mPalette;
+    // Points picked from the clouds exceeding the point budget, allocated on first use.
+    private FloatBuffer mDecimatedBuffer;
+    private final DepthColorizer mColorizer;
     public static final int PALETTE_SIZE = 360;
     public static final float HUE_BEGIN = 0;
     public static final float HUE_END = 320;
 
     public PointCloud(int maxPoints) {
         super(maxPoints, true);
-        mPalette = createPalette();
+        mColorizer = new DepthColorizer(PALETTE_SIZE, HUE_BEGIN, HUE_END, CLOUD_MAX_Z);
         mColorArray = new float[maxPoints * 4];
         Material m = new Material();
         m.useVertexColors(true);
@@ -32,47 +35,35 @@ public class PointCloud extends Points {
     }
 
     /**
-     * Pre-calculate a palette to be used to translate between point distance and RGB color.
+     * Update the points and colors in the point cloud.
      */
-    private int[] createPalette() {
-        int[] palette = new int[PALETTE_SIZE];
-        float[] hsv = new float[3];
-        hsv[1] = hsv[2] = 1;
-        for (int i = 0; i < PALETTE_SIZE; i++) {
-            hsv[0] = (HUE_END - HUE_BEGIN) * i / PALETTE_SIZE + HUE_BEGIN;
-            palette[i] = Color.HSVToColor(hsv);
-        }
-        return palette;
+    public void updateCloud(int pointCount, FloatBuffer pointBuffer) {
+        pointBuffer.rewind();
+        mColorizer.colorize(pointCount, pointBuffer, mColorArray);
+        updatePoints(pointCount, pointBuffer, mColorArray);
     }
 
     /**
-     * Calculate the right color for each point in the point cloud.
+     * Update the points and colors in the point cloud, rendering at most maxPoints points evenly
+     * picked from the cloud.
      */
-    private void calculateColors(int pointCount, FloatBuffer pointCloudBuffer) {
-        float[] points = new float[pointCount * 3];
-        pointCloudBuffer.rewind();
-        pointCloudBuffer.get(points);
-        pointCloudBuffer.rewind();
-
-        int color;
-        int colorIndex;
-        float z;
-        for (int i = 0; i < pointCount; i++) {
-            z = points[i * 3 + 2];
-            colorIndex = (int) Math.min(z / CLOUD_MAX_Z * mPalette.length, mPalette.length - 1);
-            color = mPalette[colorIndex];
-            mColorArray[i * 4] = Color.red(color) / 255f;
-            mColorArray[i * 4 + 1] = Color.green(color) / 255f;
-            mColorArray[i * 4 + 2] = Color.blue(color) / 255f;
-            mColorArray[i * 4 + 3] = Color.alpha(color) / 255f;
+    public void updateCloud(int pointCount, FloatBuffer pointBuffer, int maxPoints) {
+        if (pointCount <= maxPoints) {
+            updateCloud(pointCount, pointBuffer);
+            return;
         }
-    }
-
-    /**
-     * Update the points and colors in the point cloud.
-     */
-    public void updateCloud(int pointCount, FloatBuffer pointBuffer) {
-        calculateColors(pointCount, pointBuffer);
-        updatePoints(pointCount, pointBuffer, mColorArray);
+        if (mDecimatedBuffer == null || mDecimatedBuffer.capacity() < maxPoints * 3) {
+            mDecimatedBuffer = ByteBuffer.allocateDirect(maxPoints * 3 * 4)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        int stride = (pointCount + maxPoints - 1) / maxPoints;
+        mDecimatedBuffer.clear();
+        int kept = 0;
+        for (int i = 0; i < pointCount * 3; i += stride * 3, kept++) {
+            mDecimatedBuffer.put(pointBuffer.get(i));
+            mDecimatedBuffer.put(pointBuffer.get(i + 1));
+            mDecimatedBuffer.put(pointBuffer.get(i + 2));
+        }
+        updateCloud(kept, mDecimatedBuffer);
     }
 }
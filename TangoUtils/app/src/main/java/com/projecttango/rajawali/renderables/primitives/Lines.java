@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.rajawali.renderables.primitives;
+
+import android.opengl.GLES20;
+
+import org.rajawali3d.Object3D;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A line segment primitive for Rajawali built directly from a flat float array of vertices.
+ * Every two consecutive vertices form one segment, all drawn in a single GL_LINES call.
+ * Unlike <code>Line3D</code> it doesn't need a <code>Stack</code> of boxed vectors, and the
+ * segments can be rewritten in place to draw a batch of shapes (e.g. a pose history) at once.
+ */
+public class Lines extends Object3D {
+    private final int mMaxNumberOfVertices;
+    private final float mThickness;
+    private final boolean mHasColors;
+
+    // Fixed segments, e.g. a static shape.
+    public Lines(float[] vertices, float[] colors, float thickness) {
+        super();
+        mMaxNumberOfVertices = vertices.length / 3;
+        mThickness = thickness;
+        mHasColors = colors != null;
+        init(true, vertices, colors);
+    }
+
+    // Room for up to maxNumberOfVertices vertices, drawn once set with updateSegments.
+    public Lines(int maxNumberOfVertices, boolean isCreateColors, float thickness) {
+        super();
+        mMaxNumberOfVertices = maxNumberOfVertices;
+        mThickness = thickness;
+        mHasColors = isCreateColors;
+        init(true, new float[maxNumberOfVertices * 3],
+                isCreateColors ? new float[maxNumberOfVertices * 4] : null);
+    }
+
+    // Initialize the buffers for Lines primitive.
+    // Since only vertex, index and color buffers are used,
+    // we only initialize them using setData call.
+    protected void init(boolean createVBOs, float[] vertices, float[] colors) {
+        int[] indices = new int[mMaxNumberOfVertices];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = i;
+        }
+        setData(vertices, null, null, colors, indices, createVBOs);
+    }
+
+    // Replace the first vertexCount vertices (and colors, if this primitive has them) of the
+    // segment list. vertexCount should be even since each segment takes two vertices.
+    // The geometry's own buffers are updated too, so the VBOs are rebuilt with the current
+    // segments if the GL context is lost.
+    public void updateSegments(int vertexCount, float[] vertices, float[] colors) {
+        if (vertexCount > mMaxNumberOfVertices) {
+            throw new RuntimeException(
+                    String.format("vertexCount = %d exceeds maximum number of vertices = %d",
+                            vertexCount, mMaxNumberOfVertices));
+        }
+        FloatBuffer vertexBuffer = mGeometry.getVertices();
+        vertexBuffer.clear();
+        vertexBuffer.put(vertices, 0, vertexCount * 3);
+        vertexBuffer.rewind();
+        mGeometry.setNumIndices(vertexCount);
+        mGeometry.changeBufferData(mGeometry.getVertexBufferInfo(), vertexBuffer, 0,
+                vertexCount * 3);
+        if (mHasColors && colors != null) {
+            FloatBuffer colorBuffer = mGeometry.getColors();
+            colorBuffer.clear();
+            colorBuffer.put(colors, 0, vertexCount * 4);
+            colorBuffer.rewind();
+            mGeometry.changeBufferData(mGeometry.getColorBufferInfo(), colorBuffer, 0,
+                    vertexCount * 4);
+        }
+    }
+
+    public void preRender() {
+        super.preRender();
+        setDrawingMode(GLES20.GL_LINES);
+        GLES20.glLineWidth(mThickness);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils;
+
+import com.google.atap.tangoservice.TangoPoseData;
+
+/**
+ * <code>PosePredictor</code> taking and producing <code>TangoPoseData</code> in the start of
+ * service frame.
+ */
+public class TangoPosePredictor extends PosePredictor {
+    public TangoPosePredictor() {
+        super();
+    }
+
+    /**
+     * @param maxPrediction Maximum time in seconds to extrapolate ahead of the newest known pose.
+     */
+    public TangoPosePredictor(double maxPrediction) {
+        super(maxPrediction);
+    }
+
+    /**
+     * Adds a valid pose to the history. Poses that are not newer than the last one are ignored.
+     */
+    public void addPose(TangoPoseData pose) {
+        if (pose.statusCode == TangoPoseData.POSE_VALID) {
+            addPose(pose.timestamp, pose.translation, pose.rotation);
+        }
+    }
+
+    /**
+     * Predicts the pose at the given time and writes it in out, allocating its translation and
+     * rotation arrays if needed.
+     *
+     * @return false if there aren't enough poses to make a prediction, in which case out is left
+     * untouched.
+     */
+    public boolean predict(double timestamp, TangoPoseData out) {
+        if (out.translation == null || out.translation.length < 3) {
+            out.translation = new double[3];
+        }
+        if (out.rotation == null || out.rotation.length < 4) {
+            out.rotation = new double[4];
+        }
+        if (!predict(timestamp, out.translation, out.rotation)) {
+            return false;
+        }
+        out.timestamp = timestamp;
+        out.statusCode = TangoPoseData.POSE_VALID;
+        out.baseFrame = TangoPoseData.COORDINATE_FRAME_START_OF_SERVICE;
+        out.targetFrame = TangoPoseData.COORDINATE_FRAME_DEVICE;
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import com.google.atap.tangoservice.Tango.OnTangoUpdateListener;
+import com.google.atap.tangoservice.TangoPoseData;
+import com.google.atap.tangoservice.TangoXyzIjData;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Forwards a replayed recording to a <code>Tango.OnTangoUpdateListener</code>, so the code used
+ * with a live Tango service can be fed from a recording instead.
+ *
+ * The same <code>TangoPoseData</code> and <code>TangoXyzIjData</code> instances are reused for
+ * every callback; listeners that keep them (rather than copying their data like
+ * <code>TangoPointCloudManager</code> does) must make their own copy.
+ */
+public class TangoUpdateReplayListener implements RecordingReplayer.Listener {
+    private final OnTangoUpdateListener mListener;
+    private final TangoPoseData mPose = new TangoPoseData();
+    private final TangoXyzIjData mXyzIj = new TangoXyzIjData();
+
+    public TangoUpdateReplayListener(OnTangoUpdateListener listener) {
+        mListener = listener;
+        mPose.translation = new double[3];
+        mPose.rotation = new double[4];
+    }
+
+    @Override
+    public void onPoseAvailable(double timestamp, int baseFrame, int targetFrame, int statusCode,
+                                double[] translation, double[] rotation) {
+        mPose.timestamp = timestamp;
+        mPose.baseFrame = baseFrame;
+        mPose.targetFrame = targetFrame;
+        mPose.statusCode = statusCode;
+        System.arraycopy(translation, 0, mPose.translation, 0, 3);
+        System.arraycopy(rotation, 0, mPose.rotation, 0, 4);
+        mListener.onPoseAvailable(mPose);
+    }
+
+    @Override
+    public void onXyzIjAvailable(double timestamp, FloatBuffer xyz, int pointCount) {
+        mXyzIj.timestamp = timestamp;
+        mXyzIj.xyz = xyz;
+        mXyzIj.xyzCount = pointCount;
+        mListener.onXyzIjAvailable(mXyzIj);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.projecttango.tangoutils.recording.RecordingFormat;
+import com.projecttango.tangoutils.recording.RecordingReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Point clouds used as benchmark input.
+ *
+ * Clouds come from the recording given with the <code>benchmark.recording</code> system property
+ * if any, or are otherwise synthesized as a noisy depth scan of a wall with an obstacle in front
+ * of it, in scan order like the clouds of the depth sensor.
+ */
+final class BenchmarkClouds {
+    public static final String RECORDING_PROPERTY = "benchmark.recording";
+
+    private static final int SCAN_COLUMNS = 320;
+    private static final float WALL_DEPTH = 3f;
+    private static final float OBSTACLE_DEPTH = 1.2f;
+    private static final float NOISE = 0.01f;
+
+    private BenchmarkClouds() {
+    }
+
+    /**
+     * Creates a direct buffer with the given number of points, the way the Tango service
+     * delivers them.
+     */
+    static FloatBuffer create(int pointCount) throws IOException {
+        FloatBuffer points = ByteBuffer.allocateDirect(pointCount * 3 * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        String recording = System.getProperty(RECORDING_PROPERTY);
+        if (recording != null) {
+            readRecording(new File(recording), points, pointCount);
+        } else {
+            synthesize(points, pointCount);
+        }
+        points.clear();
+        return points;
+    }
+
+    /**
+     * Fills the buffer with the largest cloud of a recording, repeated if it has too few points.
+     */
+    private static void readRecording(File file, FloatBuffer points, int pointCount)
+            throws IOException {
+        RecordingReader reader = new RecordingReader(file);
+        int largest = 0;
+        int type;
+        while ((type = reader.next()) != RecordingReader.END_OF_RECORDING) {
+            if (type == RecordingFormat.RECORD_XYZ
+                    || type == RecordingFormat.RECORD_XYZ_COMPRESSED) {
+                largest = Math.max(largest, reader.getPointCount());
+            }
+        }
+        if (largest == 0) {
+            throw new IOException("No point cloud in " + file);
+        }
+        reader.rewind();
+        FloatBuffer cloud = FloatBuffer.allocate(largest * 3);
+        while ((type = reader.next()) != RecordingReader.END_OF_RECORDING) {
+            if ((type == RecordingFormat.RECORD_XYZ
+                    || type == RecordingFormat.RECORD_XYZ_COMPRESSED)
+                    && reader.getPointCount() == largest) {
+                reader.getPoints(cloud);
+                break;
+            }
+        }
+        for (int i = 0; i < pointCount * 3; i++) {
+            points.put(i, cloud.get(i % (largest * 3)));
+        }
+    }
+
+    private static void synthesize(FloatBuffer points, int pointCount) {
+        Random random = new Random(0);
+        int rows = (pointCount + SCAN_COLUMNS - 1) / SCAN_COLUMNS;
+        for (int i = 0; i < pointCount; i++) {
+            // Normalized image coordinates in [-0.5, 0.5).
+            float u = (float) (i % SCAN_COLUMNS) / SCAN_COLUMNS - 0.5f;
+            float v = (float) (i / SCAN_COLUMNS) / rows - 0.5f;
+            boolean obstacle = u > -0.2f && u < 0.1f && v > 0f;
+            float z = (obstacle ? OBSTACLE_DEPTH : WALL_DEPTH) + random.nextFloat() * NOISE;
+            points.put(i * 3, u * z);
+            points.put(i * 3 + 1, v * z);
+            points.put(i * 3 + 2, z);
+        }
+    }
+}
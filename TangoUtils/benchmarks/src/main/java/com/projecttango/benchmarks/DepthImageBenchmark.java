@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.projecttango.tangoutils.depth.DepthImage;
+import com.projecttango.tangoutils.depth.DepthImageProjector;
+import com.projecttango.tangoutils.depth.NormalEstimator;
+import com.projecttango.tangoutils.depth.SurfaceClassifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projection of a cloud into a depth image, the 2D kernels run on the image and the surface
+ * classification removing the floor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthImageBenchmark {
+    // Typical intrinsics of the color camera.
+    private static final double FX = 1042;
+    private static final double FY = 1042;
+    private static final double CX = 640;
+    private static final double CY = 360;
+    private static final int CAMERA_WIDTH = 1280;
+    private static final int CAMERA_HEIGHT = 720;
+    private static final float MAX_DEPTH_STEP = 0.05f;
+    // Same surface classification as the augmented reality sample.
+    private static final float NORMAL_MAX_RELATIVE_DEPTH_STEP = 0.1f;
+    private static final float FLOOR_MAX_ANGLE_DEGREES = 30;
+    private static final float FLOOR_MIN_DROP = 0.5f;
+
+    @Param({"10000", "30000", "60000"})
+    public int pointCount;
+
+    @Param({"4", "8"})
+    public int downsampling;
+
+    private FloatBuffer mPoints;
+    private DepthImageProjector mProjector;
+    private DepthImage mImage;
+    private DepthImage mEroded;
+    private float[] mGradient;
+    private int[] mLabels;
+    private NormalEstimator mNormalEstimator;
+    private SurfaceClassifier mClassifier;
+    private float[] mNormals;
+    private byte[] mSurfaceLabels;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPoints = BenchmarkClouds.create(pointCount);
+        mProjector = new DepthImageProjector(FX, FY, CX, CY, CAMERA_WIDTH, CAMERA_HEIGHT,
+                downsampling);
+        mImage = mProjector.createImage();
+        mEroded = mProjector.createImage();
+        mProjector.project(mPoints, pointCount, mImage);
+        int pixelCount = mProjector.getWidth() * mProjector.getHeight();
+        mGradient = new float[pixelCount];
+        mLabels = new int[pixelCount];
+        mNormalEstimator = new NormalEstimator(NORMAL_MAX_RELATIVE_DEPTH_STEP);
+        mClassifier = new SurfaceClassifier(FLOOR_MAX_ANGLE_DEGREES, FLOOR_MIN_DROP);
+        mNormals = new float[pixelCount * 3];
+        mSurfaceLabels = new byte[pixelCount];
+        mNormalEstimator.estimate(mImage, mNormals);
+    }
+
+    @Benchmark
+    public int project() {
+        return mProjector.project(mPoints, pointCount, mImage);
+    }
+
+    @Benchmark
+    public DepthImage erode() {
+        mImage.erode(mEroded);
+        return mEroded;
+    }
+
+    @Benchmark
+    public float[] gradient() {
+        mImage.computeGradient(mGradient);
+        return mGradient;
+    }
+
+    @Benchmark
+    public int labelComponents() {
+        return mImage.labelComponents(MAX_DEPTH_STEP, mLabels);
+    }
+
+    @Benchmark
+    public int estimateNormals() {
+        return mNormalEstimator.estimate(mImage, mNormals);
+    }
+
+    @Benchmark
+    public byte[] classifySurfaces() {
+        mClassifier.classify(mImage, mNormals, mSurfaceLabels);
+        return mSurfaceLabels;
+    }
+}
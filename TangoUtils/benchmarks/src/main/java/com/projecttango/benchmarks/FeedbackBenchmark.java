@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.projecttango.tangoutils.obstacles.GridDiffer;
+import com.projecttango.tangoutils.obstacles.HapticPattern;
+import com.projecttango.tangoutils.obstacles.HapticPatternEncoder;
+import com.projecttango.tangoutils.obstacles.HapticPlayer;
+import com.projecttango.tangoutils.obstacles.ObstacleDetector;
+import com.projecttango.tangoutils.obstacles.OccupancyGrid;
+import com.projecttango.tangoutils.sonification.GridSonifier;
+import com.projecttango.tangoutils.sonification.NotePlayer;
+import com.projecttango.tangoutils.sonification.SpatialPanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Depth to feedback path of the augmented reality sample: obstacle detection on a cloud and the
+ * sonification sweep, with the haptic and audio outputs replaced by sinks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedbackBenchmark {
+    // Same configuration as the augmented reality sample.
+    private static final int GRID_WIDTH = 20;
+    private static final int GRID_HEIGHT = 13;
+    private static final float GRID_TOLERANCE = 7f;
+    private static final float GRID_ROWS_PER_METER = 6;
+    private static final float GRID_COLUMNS_PER_METER = 10;
+    private static final int GRID_DEBOUNCE_SNAPSHOTS = 2;
+    private static final int SWEEP_END_NOTE = 4;
+    private static final int MAX_NOTES_PER_TICK = 4;
+
+    @Param({"10000", "30000", "60000"})
+    public int pointCount;
+
+    private FloatBuffer mPoints;
+    private ObstacleDetector mDetector;
+    private GridSonifier mSonifier;
+    private Blackhole mBlackhole;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) throws IOException {
+        mBlackhole = blackhole;
+        mPoints = BenchmarkClouds.create(pointCount);
+        OccupancyGrid grid = new OccupancyGrid(GRID_WIDTH, GRID_HEIGHT);
+        GridDiffer gridDiffer = new GridDiffer(GRID_WIDTH, GRID_HEIGHT, GRID_DEBOUNCE_SNAPSHOTS);
+        mDetector = new ObstacleDetector(grid, gridDiffer, GRID_TOLERANCE, GRID_ROWS_PER_METER,
+                GRID_COLUMNS_PER_METER, new HapticPatternEncoder(1f, 2.5f), new HapticPlayer() {
+                    @Override
+                    public boolean play(HapticPattern pattern) {
+                        blackhole.consume(pattern);
+                        return true;
+                    }
+                });
+
+        SpatialPanner panner = new SpatialPanner();
+        panner.configure(GRID_WIDTH, GRID_TOLERANCE);
+        mSonifier = new GridSonifier(grid, gridDiffer, panner, new NotePlayer() {
+            @Override
+            public int play(int note, float leftVolume, float rightVolume, int priority,
+                            float rate) {
+                blackhole.consume(leftVolume + rightVolume);
+                return 1;
+            }
+
+            @Override
+            public void release() {
+            }
+        }, SWEEP_END_NOTE, MAX_NOTES_PER_TICK);
+    }
+
+    @Benchmark
+    public boolean detectObstacles() {
+        return mDetector.update(mPoints, pointCount);
+    }
+
+    /**
+     * One full sweep after each cloud, the worst case where every change gets played.
+     */
+    @Benchmark
+    public void detectAndSonify() {
+        mBlackhole.consume(mDetector.update(mPoints, pointCount));
+        for (int i = 0; i <= GRID_WIDTH; i++) {
+            mSonifier.tick();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.projecttango.tangoutils.DepthColorizer;
+import com.projecttango.tangoutils.obstacles.GridDiffer;
+import com.projecttango.tangoutils.obstacles.ObstacleClusterer;
+import com.projecttango.tangoutils.obstacles.OccupancyGrid;
+import com.projecttango.tangoutils.recording.PointCloudCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-cloud kernels of the depth pipeline: grid binning, obstacle clustering, colorization and
+ * compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointCloudBenchmark {
+    // Same grid as the augmented reality sample.
+    private static final int GRID_WIDTH = 20;
+    private static final int GRID_HEIGHT = 13;
+    private static final float GRID_TOLERANCE = 7f;
+    private static final float GRID_ROWS_PER_METER = 6;
+    private static final float GRID_COLUMNS_PER_METER = 10;
+    private static final int OBSTACLE_MIN_CELLS = 2;
+    // Same palette as the PointCloud renderable.
+    private static final int PALETTE_SIZE = 360;
+    private static final float HUE_BEGIN = 0;
+    private static final float HUE_END = 320;
+    private static final float CLOUD_MAX_Z = 5;
+
+    @Param({"10000", "30000", "60000"})
+    public int pointCount;
+
+    private FloatBuffer mPoints;
+    private OccupancyGrid mGrid;
+    private GridDiffer mGridDiffer;
+    private ObstacleClusterer mClusterer;
+    private DepthColorizer mColorizer;
+    private float[] mColors;
+    private ByteBuffer mEncoded;
+    private FloatBuffer mDecoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPoints = BenchmarkClouds.create(pointCount);
+        mGrid = new OccupancyGrid(GRID_WIDTH, GRID_HEIGHT);
+        mGridDiffer = new GridDiffer(GRID_WIDTH, GRID_HEIGHT, 2);
+        mClusterer = new ObstacleClusterer(GRID_WIDTH, GRID_HEIGHT, OBSTACLE_MIN_CELLS);
+        mColorizer = new DepthColorizer(PALETTE_SIZE, HUE_BEGIN, HUE_END, CLOUD_MAX_Z);
+        mColors = new float[pointCount * 4];
+        mEncoded = ByteBuffer.allocateDirect(PointCloudCodec.getMaxEncodedSize(pointCount));
+        PointCloudCodec.encode(mPoints, pointCount, mEncoded);
+        mDecoded = FloatBuffer.allocate(pointCount * 3);
+    }
+
+    @Benchmark
+    public int binGrid() {
+        mGrid.clear();
+        return mGrid.addPoints(mPoints, pointCount, GRID_TOLERANCE, GRID_ROWS_PER_METER,
+                GRID_COLUMNS_PER_METER);
+    }
+
+    @Benchmark
+    public int binAndDiffGrid() {
+        int marked = binGrid();
+        mGridDiffer.update(mGrid.getCells());
+        return marked;
+    }
+
+    @Benchmark
+    public int binAndCluster() {
+        binGrid();
+        return mClusterer.update(mGrid);
+    }
+
+    @Benchmark
+    public float[] colorize() {
+        mColorizer.colorize(pointCount, mPoints, mColors);
+        return mColors;
+    }
+
+    @Benchmark
+    public int encode() {
+        mEncoded.clear();
+        return PointCloudCodec.encode(mPoints, pointCount, mEncoded);
+    }
+
+    @Benchmark
+    public FloatBuffer decode() {
+        mEncoded.rewind();
+        mDecoded.clear();
+        PointCloudCodec.decode(mEncoded, pointCount, mDecoded);
+        return mDecoded;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.google.atap.tangoservice.TangoPoseData;
+import com.projecttango.rajawali.DeviceExtrinsics;
+import com.projecttango.rajawali.Pose;
+import com.projecttango.rajawali.ScenePoseCalculator;
+import com.projecttango.tangoutils.PosePredictor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame pose math: Tango pose to matrix conversion, the device to OpenGL camera pose chain
+ * and pose prediction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseMathBenchmark {
+    private TangoPoseData mDevicePose;
+    private DeviceExtrinsics mExtrinsics;
+    private PosePredictor mPredictor;
+    private final Vector3 mPosition = new Vector3();
+    private final Quaternion mOrientation = new Quaternion();
+    private final double[] mTranslation = new double[3];
+    private final double[] mRotation = new double[4];
+
+    @Setup
+    public void setUp() {
+        mDevicePose = createPose(0, 0.3, -0.2, 1.4, 0.1, 0.2, 0.3);
+        // Extrinsics close to those of the development kit: the cameras are rotated and offset
+        // a few centimeters from the IMU.
+        mExtrinsics = new DeviceExtrinsics(
+                createPose(0, 0, 0, 0, 0, 0, 0),
+                createPose(0, 0.06, 0.004, 0, Math.PI, 0, 0),
+                createPose(0, 0.06, 0.012, 0, Math.PI, 0, 0));
+
+        // Device moving and turning at walking pace, sampled at 30 Hz.
+        mPredictor = new PosePredictor();
+        for (int i = 0; i < 8; i++) {
+            double t = i / 30.0;
+            TangoPoseData pose = createPose(t, 0.3 + t, -0.2, 1.4, 0.1, 0.2, 0.3 + t * 0.5);
+            mPredictor.addPose(pose.timestamp, pose.translation, pose.rotation);
+        }
+    }
+
+    @Benchmark
+    public Matrix4 tangoPoseToMatrix() {
+        return ScenePoseCalculator.tangoPoseToMatrix(mDevicePose);
+    }
+
+    @Benchmark
+    public Pose toOpenGLPose() {
+        return ScenePoseCalculator.toOpenGLPose(mDevicePose);
+    }
+
+    @Benchmark
+    public Quaternion toOpenGLPoseWithoutAllocation() {
+        ScenePoseCalculator.toOpenGLPose(mDevicePose.translation, mDevicePose.rotation,
+                mPosition, mOrientation);
+        return mOrientation;
+    }
+
+    @Benchmark
+    public Pose toOpenGlCameraPose() {
+        return ScenePoseCalculator.toOpenGlCameraPose(mDevicePose, mExtrinsics);
+    }
+
+    @Benchmark
+    public double[] predictPose() {
+        mPredictor.predict(0.3, mTranslation, mRotation);
+        return mRotation;
+    }
+
+    /**
+     * Creates a valid start of service to device pose from a translation and Euler angles.
+     */
+    private static TangoPoseData createPose(double timestamp, double x, double y, double z,
+                                            double roll, double pitch, double yaw) {
+        double cr = Math.cos(roll / 2);
+        double sr = Math.sin(roll / 2);
+        double cp = Math.cos(pitch / 2);
+        double sp = Math.sin(pitch / 2);
+        double cy = Math.cos(yaw / 2);
+        double sy = Math.sin(yaw / 2);
+
+        TangoPoseData pose = new TangoPoseData();
+        pose.timestamp = timestamp;
+        pose.statusCode = TangoPoseData.POSE_VALID;
+        pose.baseFrame = TangoPoseData.COORDINATE_FRAME_START_OF_SERVICE;
+        pose.targetFrame = TangoPoseData.COORDINATE_FRAME_DEVICE;
+        pose.translation = new double[] {x, y, z};
+        pose.rotation = new double[] {
+                sr * cp * cy - cr * sp * sy,
+                cr * sp * cy + sr * cp * sy,
+                cr * cp * sy - sr * sp * cy,
+                cr * cp * cy + sr * sp * sy
+        };
+        return pose;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.benchmarks;
+
+import com.projecttango.tangoutils.spatial.SpatialHashGrid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the spatial index of a cloud, and its queries against a linear scan of the cloud.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+    private static final float CELL_SIZE = 0.05f;
+    private static final int BUCKET_COUNT = 16384;
+    private static final float QUERY_RADIUS = 0.05f;
+    private static final int NEAREST_COUNT = 8;
+    private static final float NEAREST_MAX_DISTANCE = 0.5f;
+    private static final float RAY_MAX_DISTANCE = 5f;
+    // Queries are centered on points of the cloud, cycling through this many of them.
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"10000", "30000", "60000"})
+    public int pointCount;
+
+    private FloatBuffer mPoints;
+    private SpatialHashGrid mIndex;
+    private int[] mFound;
+    private int[] mNearestIndices;
+    private float[] mNearestDistances;
+    private int mQuery = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPoints = BenchmarkClouds.create(pointCount);
+        mIndex = new SpatialHashGrid(CELL_SIZE, BUCKET_COUNT, pointCount);
+        mIndex.build(mPoints, pointCount);
+        mFound = new int[pointCount];
+        mNearestIndices = new int[NEAREST_COUNT];
+        mNearestDistances = new float[NEAREST_COUNT];
+    }
+
+    @Benchmark
+    public int build() {
+        mIndex.build(mPoints, pointCount);
+        return mIndex.getPointCount();
+    }
+
+    @Benchmark
+    public int radiusSearch() {
+        int point = nextQueryPoint();
+        return mIndex.radiusSearch(mPoints.get(point * 3), mPoints.get(point * 3 + 1),
+                mPoints.get(point * 3 + 2), QUERY_RADIUS, mFound);
+    }
+
+    @Benchmark
+    public int radiusSearchLinear() {
+        int point = nextQueryPoint();
+        float x = mPoints.get(point * 3);
+        float y = mPoints.get(point * 3 + 1);
+        float z = mPoints.get(point * 3 + 2);
+        float radiusSquared = QUERY_RADIUS * QUERY_RADIUS;
+        int found = 0;
+        for (int i = 0; i < pointCount; i++) {
+            float dx = mPoints.get(i * 3) - x;
+            float dy = mPoints.get(i * 3 + 1) - y;
+            float dz = mPoints.get(i * 3 + 2) - z;
+            if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                mFound[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int nearest() {
+        int point = nextQueryPoint();
+        return mIndex.nearest(mPoints.get(point * 3), mPoints.get(point * 3 + 1),
+                mPoints.get(point * 3 + 2), NEAREST_MAX_DISTANCE, mNearestIndices,
+                mNearestDistances);
+    }
+
+    /**
+     * Casts a ray from the device towards a point of the cloud, like a tap on the screen.
+     */
+    @Benchmark
+    public int rayMarch() {
+        int point = nextQueryPoint();
+        float x = mPoints.get(point * 3);
+        float y = mPoints.get(point * 3 + 1);
+        float z = mPoints.get(point * 3 + 2);
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        return mIndex.rayMarch(0, 0, 0, x / length, y / length, z / length, QUERY_RADIUS,
+                RAY_MAX_DISTANCE);
+    }
+
+    private int nextQueryPoint() {
+        mQuery = (mQuery + 1) % QUERY_COUNT;
+        return (int) ((long) mQuery * pointCount / QUERY_COUNT);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.atap.tangoservice;
+
+/**
+ * Plain JVM stand-in for the Tango pose type, with the fields and constants used by the
+ * benchmarked code. The real class is Parcelable and can only be loaded on Android.
+ */
+public class TangoPoseData {
+    public static final int COORDINATE_FRAME_START_OF_SERVICE = 2;
+    public static final int COORDINATE_FRAME_DEVICE = 4;
+    public static final int COORDINATE_FRAME_IMU = 5;
+    public static final int COORDINATE_FRAME_CAMERA_COLOR = 7;
+    public static final int COORDINATE_FRAME_CAMERA_DEPTH = 8;
+
+    public static final int POSE_INITIALIZING = 0;
+    public static final int POSE_VALID = 1;
+    public static final int POSE_INVALID = 2;
+    public static final int POSE_UNKNOWN = 3;
+
+    public double timestamp;
+    public double[] rotation = new double[4];
+    public double[] translation = new double[3];
+    public int statusCode;
+    public int baseFrame;
+    public int targetFrame;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Colors points by their depth, following the light spectrum over a range of hues.
+ *
+ * The colors are precomputed in a palette of RGBA floats, so coloring a cloud is a table lookup
+ * per point. The points are bulk-copied into a scratch array that is reused from one cloud to the
+ * next, so coloring doesn't allocate once the largest cloud has been seen.
+ *
+ * This class is not thread safe.
+ */
+public class DepthColorizer {
+    private final float mMaxDepth;
+    // RGBA components of each palette entry.
+    private final float[] mPalette;
+    private final int mPaletteSize;
+    private float[] mPoints = new float[0];
+
+    /**
+     * @param paletteSize Number of distinct colors.
+     * @param hueBegin    Hue of the points at depth 0, in degrees.
+     * @param hueEnd      Hue of the points at maxDepth and beyond, in degrees.
+     * @param maxDepth    Depth at which the palette ends, in meters.
+     */
+    public DepthColorizer(int paletteSize, float hueBegin, float hueEnd, float maxDepth) {
+        mPaletteSize = paletteSize;
+        mMaxDepth = maxDepth;
+        mPalette = new float[paletteSize * 4];
+        for (int i = 0; i < paletteSize; i++) {
+            float hue = (hueEnd - hueBegin) * i / paletteSize + hueBegin;
+            hueToRgba(hue, mPalette, i * 4);
+        }
+    }
+
+    /**
+     * Writes the RGBA color of the first pointCount points of the buffer into colors, which must
+     * hold 4 floats per point. The buffer position is not modified.
+     */
+    public void colorize(int pointCount, FloatBuffer points, float[] colors) {
+        if (mPoints.length < pointCount * 3) {
+            mPoints = new float[pointCount * 3];
+        }
+        int position = points.position();
+        points.position(0);
+        points.get(mPoints, 0, pointCount * 3);
+        points.position(position);
+
+        for (int i = 0; i < pointCount; i++) {
+            float z = mPoints[i * 3 + 2];
+            int colorIndex = (int) Math.min(z / mMaxDepth * mPaletteSize, mPaletteSize - 1);
+            System.arraycopy(mPalette, colorIndex * 4, colors, i * 4, 4);
+        }
+    }
+
+    /**
+     * Converts a fully saturated and bright hue to RGBA, with the same 8-bit precision as
+     * <code>android.graphics.Color.HSVToColor</code>.
+     */
+    private static void hueToRgba(float hue, float[] out, int offset) {
+        float h = (hue % 360 + 360) % 360 / 60;
+        int sector = (int) h;
+        float f = h - sector;
+        float r;
+        float g;
+        float b;
+        switch (sector) {
+            case 0:  r = 1;     g = f;     b = 0;     break;
+            case 1:  r = 1 - f; g = 1;     b = 0;     break;
+            case 2:  r = 0;     g = 1;     b = f;     break;
+            case 3:  r = 0;     g = 1 - f; b = 1;     break;
+            case 4:  r = f;     g = 0;     b = 1;     break;
+            default: r = 1;     g = 0;     b = 1 - f; break;
+        }
+        out[offset] = Math.round(r * 255) / 255f;
+        out[offset + 1] = Math.round(g * 255) / 255f;
+        out[offset + 2] = Math.round(b * 255) / 255f;
+        out[offset + 3] = 1;
+    }
+}
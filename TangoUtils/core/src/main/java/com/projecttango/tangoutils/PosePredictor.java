@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils;
+
+/**
+ * Extrapolates the device pose at a given time from the most recent valid poses, assuming
+ * constant linear and angular velocity.
+ *
+ * It is intended to be used when the Tango service can't provide a pose for a timestamp (e.g. the
+ * camera frame is newer than the last pose estimate) or to predict the pose slightly ahead in
+ * time to compensate for rendering latency.
+ *
+ * Poses are kept in primitive arrays, so adding and predicting poses doesn't allocate. Use
+ * <code>TangoPosePredictor</code> to work with <code>TangoPoseData</code> directly. This class is
+ * not thread safe.
+ */
+public class PosePredictor {
+    // Don't extrapolate further than this from the newest known pose, in seconds.
+    public static final double DEFAULT_MAX_PREDICTION = 0.2;
+    // Ignore velocity estimates from poses closer than this in time, in seconds.
+    private static final double MIN_VELOCITY_INTERVAL = 1e-3;
+    // Velocity is estimated between the newest pose and the oldest one within this window.
+    private static final double VELOCITY_WINDOW = 0.1;
+    private static final int HISTORY_SIZE = 8;
+
+    // Pose history ring. Rotations are stored as x, y, z, w like TangoPoseData.
+    private final double[] mTimestamps = new double[HISTORY_SIZE];
+    private final double[] mTranslations = new double[HISTORY_SIZE * 3];
+    private final double[] mRotations = new double[HISTORY_SIZE * 4];
+    private int mNewest = -1;
+    private int mCount = 0;
+
+    private final double mMaxPrediction;
+
+    // Current velocity estimate.
+    private final double[] mLinearVelocity = new double[3];
+    private final double[] mAngularVelocity = new double[3];
+    private boolean mHasVelocity = false;
+
+    public PosePredictor() {
+        this(DEFAULT_MAX_PREDICTION);
+    }
+
+    /**
+     * @param maxPrediction Maximum time in seconds to extrapolate ahead of the newest known pose.
+     */
+    public PosePredictor(double maxPrediction) {
+        mMaxPrediction = maxPrediction;
+    }
+
+    /**
+     * Adds a pose to the history. Poses that are not newer than the last one are ignored.
+     *
+     * @param translation x, y, z translation.
+     * @param rotation    x, y, z, w rotation quaternion.
+     */
+    public void addPose(double timestamp, double[] translation, double[] rotation) {
+        if (mCount > 0 && timestamp <= mTimestamps[mNewest]) {
+            return;
+        }
+        mNewest = (mNewest + 1) % HISTORY_SIZE;
+        mCount = Math.min(mCount + 1, HISTORY_SIZE);
+        mTimestamps[mNewest] = timestamp;
+        System.arraycopy(translation, 0, mTranslations, mNewest * 3, 3);
+        System.arraycopy(rotation, 0, mRotations, mNewest * 4, 4);
+        updateVelocity();
+    }
+
+    /**
+     * Forgets every pose, e.g. after the Tango service has been reset.
+     */
+    public void reset() {
+        mNewest = -1;
+        mCount = 0;
+        mHasVelocity = false;
+    }
+
+    /**
+     * Predicts the pose at the given time.
+     *
+     * @param outTranslation Receives the x, y, z translation.
+     * @param outRotation    Receives the x, y, z, w rotation quaternion.
+     * @return false if there aren't enough poses to make a prediction.
+     */
+    public boolean predict(double timestamp, double[] outTranslation, double[] outRotation) {
+        if (!mHasVelocity) {
+            return false;
+        }
+        double dt = timestamp - mTimestamps[mNewest];
+        dt = Math.max(-mMaxPrediction, Math.min(dt, mMaxPrediction));
+
+        int t = mNewest * 3;
+        for (int i = 0; i < 3; i++) {
+            outTranslation[i] = mTranslations[t + i] + mLinearVelocity[i] * dt;
+        }
+
+        // Rotate the newest orientation by the angular velocity integrated over dt.
+        double wx = mAngularVelocity[0] * dt;
+        double wy = mAngularVelocity[1] * dt;
+        double wz = mAngularVelocity[2] * dt;
+        double angle = Math.sqrt(wx * wx + wy * wy + wz * wz);
+        double dw = Math.cos(angle / 2);
+        double s = angle > 1e-12 ? Math.sin(angle / 2) / angle : 0.5;
+        double dx = wx * s;
+        double dy = wy * s;
+        double dz = wz * s;
+
+        int r = mNewest * 4;
+        double qx = mRotations[r];
+        double qy = mRotations[r + 1];
+        double qz = mRotations[r + 2];
+        double qw = mRotations[r + 3];
+        // out = delta * q
+        outRotation[0] = dw * qx + dx * qw + dy * qz - dz * qy;
+        outRotation[1] = dw * qy - dx * qz + dy * qw + dz * qx;
+        outRotation[2] = dw * qz + dx * qy - dy * qx + dz * qw;
+        outRotation[3] = dw * qw - dx * qx - dy * qy - dz * qz;
+        normalizeQuaternion(outRotation);
+        return true;
+    }
+
+    /**
+     * Gets the timestamp of the newest known pose, or -1 if there is none.
+     */
+    public double getLatestTimestamp() {
+        return mCount == 0 ? -1 : mTimestamps[mNewest];
+    }
+
+    private void updateVelocity() {
+        // Use the oldest pose within the velocity window to smooth out noise between poses.
+        int oldest = -1;
+        for (int i = 1; i < mCount; i++) {
+            int index = (mNewest - i + HISTORY_SIZE) % HISTORY_SIZE;
+            if (mTimestamps[mNewest] - mTimestamps[index] > VELOCITY_WINDOW) {
+                break;
+            }
+            oldest = index;
+        }
+        if (oldest < 0) {
+            // Fall back to the previous pose even if it's outside of the window.
+            if (mCount < 2) {
+                mHasVelocity = false;
+                return;
+            }
+            oldest = (mNewest - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        }
+        double dt = mTimestamps[mNewest] - mTimestamps[oldest];
+        if (dt < MIN_VELOCITY_INTERVAL) {
+            return;
+        }
+
+        for (int i = 0; i < 3; i++) {
+            mLinearVelocity[i] =
+                    (mTranslations[mNewest * 3 + i] - mTranslations[oldest * 3 + i]) / dt;
+        }
+
+        // delta = newest * conjugate(oldest), taking the shortest path.
+        int n = mNewest * 4;
+        int o = oldest * 4;
+        double ax = mRotations[n], ay = mRotations[n + 1], az = mRotations[n + 2],
+                aw = mRotations[n + 3];
+        double bx = -mRotations[o], by = -mRotations[o + 1], bz = -mRotations[o + 2],
+                bw = mRotations[o + 3];
+        double dx = aw * bx + ax * bw + ay * bz - az * by;
+        double dy = aw * by - ax * bz + ay * bw + az * bx;
+        double dz = aw * bz + ax * by - ay * bx + az * bw;
+        double dw = aw * bw - ax * bx - ay * by - az * bz;
+        if (dw < 0) {
+            dx = -dx;
+            dy = -dy;
+            dz = -dz;
+            dw = -dw;
+        }
+        double sinHalf = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double angle = 2 * Math.atan2(sinHalf, dw);
+        double scale = sinHalf > 1e-12 ? angle / sinHalf / dt : 2 / dt;
+        mAngularVelocity[0] = dx * scale;
+        mAngularVelocity[1] = dy * scale;
+        mAngularVelocity[2] = dz * scale;
+        mHasVelocity = true;
+    }
+
+    private static void normalizeQuaternion(double[] q) {
+        double norm = Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+        if (norm > 0) {
+            q[0] /= norm;
+            q[1] /= norm;
+            q[2] /= norm;
+            q[3] /= norm;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer single-consumer queue of pose updates.
+ *
+ * Each entry is an integer id (e.g. the object the pose belongs to) together with a translation
+ * and a rotation quaternion, stored in preallocated primitive arrays, so neither offering nor
+ * polling allocates. Exactly one thread may call <code>offer</code> and exactly one (possibly
+ * different) thread may call <code>poll</code>.
+ */
+public class PoseUpdateQueue {
+    private final int mCapacity;
+    private final int[] mIds;
+    private final double[] mTranslations;
+    private final double[] mRotations;
+
+    // Index of the next entry to be read. Only written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+    // Index of the next entry to be written. Only written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+
+    public PoseUpdateQueue(int capacity) {
+        mCapacity = capacity;
+        mIds = new int[capacity];
+        mTranslations = new double[capacity * 3];
+        mRotations = new double[capacity * 4];
+    }
+
+    /**
+     * Adds a pose update to the queue. Must only be called from the producer thread.
+     *
+     * @param translation x, y, z translation.
+     * @param rotation    x, y, z, w rotation quaternion.
+     * @return false if the queue is full and the update was not added.
+     */
+    public boolean offer(int id, double[] translation, double[] rotation) {
+        long tail = mTail.get();
+        if (tail - mHead.get() >= mCapacity) {
+            return false;
+        }
+        int slot = (int) (tail % mCapacity);
+        mIds[slot] = id;
+        System.arraycopy(translation, 0, mTranslations, slot * 3, 3);
+        System.arraycopy(rotation, 0, mRotations, slot * 4, 4);
+        // Publish the entry to the consumer.
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest pose update from the queue. Must only be called from the consumer thread.
+     *
+     * @param outTranslation Receives the x, y, z translation.
+     * @param outRotation    Receives the x, y, z, w rotation quaternion.
+     * @return the id of the update, or -1 if the queue is empty.
+     */
+    public int poll(double[] outTranslation, double[] outRotation) {
+        long head = mHead.get();
+        if (head >= mTail.get()) {
+            return -1;
+        }
+        int slot = (int) (head % mCapacity);
+        int id = mIds[slot];
+        System.arraycopy(mTranslations, slot * 3, outTranslation, 0, 3);
+        System.arraycopy(mRotations, slot * 4, outRotation, 0, 4);
+        // Hand the slot back to the producer.
+        mHead.lazySet(head + 1);
+        return id;
+    }
+
+    public boolean isEmpty() {
+        return mHead.get() >= mTail.get();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Software mixer for short preloaded PCM samples, producing interleaved 16 bit stereo.
+ *
+ * Notes are requested with <code>play</code> from any thread and handed to the mixing thread
+ * through a lock-free queue. The mixing thread calls <code>mix</code> to render the next block of
+ * audio: each active voice is resampled to the output rate and playback rate with linear
+ * interpolation, scaled by its left and right gains and accumulated into a preallocated buffer.
+ * When every voice is busy the oldest one is stolen.
+ *
+ * This class is plain Java with no Android dependencies so it can be exercised off-device.
+ * Nothing in the mixing path allocates.
+ */
+public class PcmMixer {
+    private static final int FRACTION_BITS = 16;
+    private static final long FRACTION_MASK = (1L << FRACTION_BITS) - 1;
+    private static final int GAIN_BITS = 15;
+    private static final int PENDING_CAPACITY = 64;
+
+    private final PcmSample[] mSamples;
+    private final int mOutputSampleRate;
+    private final int mMaxFrames;
+
+    // Voice state, only accessed by the mixing thread. mVoiceSample is -1 for free voices.
+    private final int[] mVoiceSample;
+    private final long[] mVoicePosition;
+    private final long[] mVoiceStep;
+    private final int[] mVoiceLeftGain;
+    private final int[] mVoiceRightGain;
+    private final long[] mVoiceStartOrder;
+    private long mStartCounter = 0;
+    private volatile int mActiveVoices = 0;
+
+    // Notes waiting to be started by the mixing thread.
+    private final Object mProducerLock = new Object();
+    private final int[] mPendingSample = new int[PENDING_CAPACITY];
+    private final float[] mPendingLeft = new float[PENDING_CAPACITY];
+    private final float[] mPendingRight = new float[PENDING_CAPACITY];
+    private final float[] mPendingRate = new float[PENDING_CAPACITY];
+    private final AtomicLong mPendingHead = new AtomicLong();
+    private final AtomicLong mPendingTail = new AtomicLong();
+
+    private final int[] mMixBuffer;
+
+    /**
+     * @param samples          Samples that can be played, by index.
+     * @param outputSampleRate Sample rate of the mixed output, in Hz.
+     * @param maxVoices        Maximum number of samples playing at the same time.
+     * @param maxFrames        Maximum number of stereo frames mixed per call to <code>mix</code>.
+     */
+    public PcmMixer(PcmSample[] samples, int outputSampleRate, int maxVoices, int maxFrames) {
+        mSamples = samples;
+        mOutputSampleRate = outputSampleRate;
+        mMaxFrames = maxFrames;
+        mVoiceSample = new int[maxVoices];
+        mVoicePosition = new long[maxVoices];
+        mVoiceStep = new long[maxVoices];
+        mVoiceLeftGain = new int[maxVoices];
+        mVoiceRightGain = new int[maxVoices];
+        mVoiceStartOrder = new long[maxVoices];
+        for (int i = 0; i < maxVoices; i++) {
+            mVoiceSample[i] = -1;
+        }
+        mMixBuffer = new int[maxFrames * 2];
+    }
+
+    /**
+     * Requests a sample to be played from the next mixed block. Can be called from any thread.
+     *
+     * @param sample Sample index.
+     * @param left   Left channel gain, from 0 to 1.
+     * @param right  Right channel gain, from 0 to 1.
+     * @param rate   Playback rate, 1 being the original pitch.
+     * @return false if too many notes are pending and this one was dropped.
+     */
+    public boolean play(int sample, float left, float right, float rate) {
+        if (sample < 0 || sample >= mSamples.length || rate <= 0) {
+            return false;
+        }
+        synchronized (mProducerLock) {
+            long tail = mPendingTail.get();
+            if (tail - mPendingHead.get() >= PENDING_CAPACITY) {
+                return false;
+            }
+            int slot = (int) (tail % PENDING_CAPACITY);
+            mPendingSample[slot] = sample;
+            mPendingLeft[slot] = left;
+            mPendingRight[slot] = right;
+            mPendingRate[slot] = rate;
+            mPendingTail.lazySet(tail + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Mixes the next block of audio. Must always be called from the same thread.
+     *
+     * @param out    Receives frames * 2 interleaved left and right samples.
+     * @param frames Number of stereo frames to mix, at most the maxFrames given to the
+     *               constructor.
+     */
+    public void mix(short[] out, int frames) {
+        if (frames > mMaxFrames) {
+            throw new IllegalArgumentException(
+                    "frames = " + frames + " exceeds maximum number of frames = " + mMaxFrames);
+        }
+        startPendingVoices();
+
+        int[] mix = mMixBuffer;
+        int length = frames * 2;
+        for (int i = 0; i < length; i++) {
+            mix[i] = 0;
+        }
+
+        int active = 0;
+        for (int v = 0; v < mVoiceSample.length; v++) {
+            if (mVoiceSample[v] < 0) {
+                continue;
+            }
+            short[] data = mSamples[mVoiceSample[v]].getData();
+            int last = data.length - 1;
+            long position = mVoicePosition[v];
+            long step = mVoiceStep[v];
+            int leftGain = mVoiceLeftGain[v];
+            int rightGain = mVoiceRightGain[v];
+            int frame = 0;
+            for (; frame < frames; frame++) {
+                int index = (int) (position >> FRACTION_BITS);
+                if (index >= last) {
+                    break;
+                }
+                int a = data[index];
+                int b = data[index + 1];
+                int s = a + (int) (((b - a) * (position & FRACTION_MASK)) >> FRACTION_BITS);
+                mix[frame * 2] += (s * leftGain) >> GAIN_BITS;
+                mix[frame * 2 + 1] += (s * rightGain) >> GAIN_BITS;
+                position += step;
+            }
+            if (frame < frames) {
+                // The sample is over, free the voice.
+                mVoiceSample[v] = -1;
+            } else {
+                mVoicePosition[v] = position;
+                active++;
+            }
+        }
+        mActiveVoices = active;
+
+        for (int i = 0; i < length; i++) {
+            int s = mix[i];
+            out[i] = (short) (s > Short.MAX_VALUE ? Short.MAX_VALUE
+                    : s < Short.MIN_VALUE ? Short.MIN_VALUE : s);
+        }
+    }
+
+    /**
+     * Gets the number of voices that were still playing after the last mixed block.
+     */
+    public int getActiveVoiceCount() {
+        return mActiveVoices;
+    }
+
+    public int getOutputSampleRate() {
+        return mOutputSampleRate;
+    }
+
+    private void startPendingVoices() {
+        long head = mPendingHead.get();
+        long tail = mPendingTail.get();
+        for (; head < tail; head++) {
+            int slot = (int) (head % PENDING_CAPACITY);
+            int sample = mPendingSample[slot];
+            int voice = allocateVoice();
+            mVoiceSample[voice] = sample;
+            mVoicePosition[voice] = 0;
+            mVoiceStep[voice] = (long) ((double) mSamples[sample].getSampleRate()
+                    / mOutputSampleRate * mPendingRate[slot] * (1L << FRACTION_BITS));
+            mVoiceLeftGain[voice] = toGain(mPendingLeft[slot]);
+            mVoiceRightGain[voice] = toGain(mPendingRight[slot]);
+            mVoiceStartOrder[voice] = mStartCounter++;
+        }
+        mPendingHead.lazySet(head);
+    }
+
+    private int allocateVoice() {
+        int oldest = 0;
+        for (int v = 0; v < mVoiceSample.length; v++) {
+            if (mVoiceSample[v] < 0) {
+                return v;
+            }
+            if (mVoiceStartOrder[v] < mVoiceStartOrder[oldest]) {
+                oldest = v;
+            }
+        }
+        return oldest;
+    }
+
+    private static int toGain(float gain) {
+        return (int) (Math.max(0f, Math.min(gain, 1f)) * (1 << GAIN_BITS));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.audio;
+
+/**
+ * Decoded mono 16 bit PCM audio, ready to be mixed by a <code>PcmMixer</code>.
+ */
+public class PcmSample {
+    private final short[] mData;
+    private final int mSampleRate;
+
+    public PcmSample(short[] data, int sampleRate) {
+        mData = data;
+        mSampleRate = sampleRate;
+    }
+
+    public short[] getData() {
+        return mData;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.audio;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Minimal decoder for uncompressed RIFF WAVE files.
+ *
+ * Supports 8 and 16 bit PCM with any number of channels, which are averaged down to mono. This is
+ * plain Java so it can be used off-device as well.
+ */
+public final class WavDecoder {
+    private static final int FORMAT_PCM = 1;
+
+    /**
+     * Avoid instantiating the class since it will only be used statically.
+     */
+    private WavDecoder() {}
+
+    /**
+     * Decodes a whole WAVE stream. The stream is not closed.
+     *
+     * @throws IOException if the stream can't be read or is not a supported WAVE file.
+     */
+    public static PcmSample decode(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (readTag(in) != tag("RIFF")) {
+            throw new IOException("Not a RIFF file");
+        }
+        readIntLE(in);
+        if (readTag(in) != tag("WAVE")) {
+            throw new IOException("Not a WAVE file");
+        }
+
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        while (true) {
+            int chunkTag = readTag(in);
+            int chunkSize = readIntLE(in);
+            if (chunkTag == tag("fmt ")) {
+                int format = readShortLE(in);
+                channels = readShortLE(in);
+                sampleRate = readIntLE(in);
+                readIntLE(in);
+                readShortLE(in);
+                bitsPerSample = readShortLE(in);
+                skip(in, chunkSize - 16);
+                if (format != FORMAT_PCM || (bitsPerSample != 8 && bitsPerSample != 16)
+                        || channels < 1) {
+                    throw new IOException("Unsupported WAVE format " + format + ", "
+                            + bitsPerSample + " bits, " + channels + " channels");
+                }
+            } else if (chunkTag == tag("data")) {
+                if (channels == 0) {
+                    throw new IOException("WAVE data chunk before fmt chunk");
+                }
+                byte[] bytes = new byte[chunkSize];
+                in.readFully(bytes);
+                return new PcmSample(toMono(bytes, channels, bitsPerSample), sampleRate);
+            } else {
+                // Chunks are padded to an even size.
+                skip(in, chunkSize + (chunkSize & 1));
+            }
+        }
+    }
+
+    private static short[] toMono(byte[] bytes, int channels, int bitsPerSample) {
+        int bytesPerSample = bitsPerSample / 8;
+        int frames = bytes.length / (bytesPerSample * channels);
+        short[] data = new short[frames];
+        int b = 0;
+        for (int i = 0; i < frames; i++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                if (bytesPerSample == 2) {
+                    sum += (short) ((bytes[b] & 0xff) | (bytes[b + 1] << 8));
+                } else {
+                    // 8 bit PCM is unsigned.
+                    sum += ((bytes[b] & 0xff) - 128) << 8;
+                }
+                b += bytesPerSample;
+            }
+            data[i] = (short) (sum / channels);
+        }
+        return data;
+    }
+
+    private static int tag(String tag) {
+        return tag.charAt(0) | tag.charAt(1) << 8 | tag.charAt(2) << 16 | tag.charAt(3) << 24;
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        return readIntLE(in);
+    }
+
+    private static int readIntLE(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readShortLE(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xffff;
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes(bytes);
+            if (skipped <= 0) {
+                // skipBytes doesn't report the end of the stream, readByte does.
+                in.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+}
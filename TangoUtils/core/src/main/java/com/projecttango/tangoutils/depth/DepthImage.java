@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.depth;
+
+import java.util.Arrays;
+
+/**
+ * Depth image of a cloud, at a reduced resolution of the camera image, with the basic 2D kernels
+ * run on it before segmenting obstacles.
+ *
+ * Depths are kept row by row in a float array, in meters along the optical axis, 0 marking the
+ * pixels no point projected to. The image also keeps the camera intrinsics scaled to its
+ * resolution, to turn its pixels back into points. Images are created by a
+ * <code>DepthImageProjector</code> and reused from one cloud to the next; the kernels write into
+ * caller provided images and arrays so they don't allocate either.
+ *
+ * This class is not thread safe.
+ */
+public class DepthImage {
+    private final int mWidth;
+    private final int mHeight;
+    private final float mFx;
+    private final float mFy;
+    private final float mCx;
+    private final float mCy;
+    private final float[] mDepths;
+    private int mValidCount = 0;
+    // Pixels waiting to be visited while labelling components, allocated on first use.
+    private int[] mPending;
+
+    /**
+     * Creates an image given the focal lengths and principal point of the camera at its
+     * resolution, in pixels.
+     */
+    DepthImage(int width, int height, float fx, float fy, float cx, float cy) {
+        mWidth = width;
+        mHeight = height;
+        mFx = fx;
+        mFy = fy;
+        mCx = cx;
+        mCy = cy;
+        mDepths = new float[width * height];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Gets the depths of the image, row by row. Writing into the array modifies the image.
+     */
+    public float[] getDepths() {
+        return mDepths;
+    }
+
+    /**
+     * Gets the depth of a pixel in meters, or 0 if no point projected to it.
+     */
+    public float getDepth(int x, int y) {
+        return mDepths[y * mWidth + x];
+    }
+
+    /**
+     * Gets the number of pixels with a depth, as of the last projection or kernel writing it.
+     */
+    public int getValidCount() {
+        return mValidCount;
+    }
+
+    public float getFx() {
+        return mFx;
+    }
+
+    public float getFy() {
+        return mFy;
+    }
+
+    public float getCx() {
+        return mCx;
+    }
+
+    public float getCy() {
+        return mCy;
+    }
+
+    /**
+     * Gets the x coordinate, in the camera frame, of the point seen at the center of a pixel at
+     * the given depth.
+     */
+    public float getPointX(int x, float depth) {
+        return (x + 0.5f - mCx) * depth / mFx;
+    }
+
+    /**
+     * Gets the y coordinate, in the camera frame, of the point seen at the center of a pixel at
+     * the given depth.
+     */
+    public float getPointY(int y, float depth) {
+        return (y + 0.5f - mCy) * depth / mFy;
+    }
+
+    public void clear() {
+        Arrays.fill(mDepths, 0);
+        mValidCount = 0;
+    }
+
+    void setValidCount(int validCount) {
+        mValidCount = validCount;
+    }
+
+    /**
+     * Writes into out the pixels whose 4 neighbours all have a depth, clearing the others. This
+     * removes isolated speckles and the thin, noisy borders of the surfaces.
+     *
+     * @param out Image of the same size, which must not be this image.
+     */
+    public void erode(DepthImage out) {
+        checkSameSize(out);
+        float[] in = mDepths;
+        float[] eroded = out.mDepths;
+        int valid = 0;
+        for (int y = 0; y < mHeight; y++) {
+            for (int x = 0; x < mWidth; x++) {
+                int i = y * mWidth + x;
+                float depth = in[i];
+                if (depth > 0 && x > 0 && x < mWidth - 1 && y > 0 && y < mHeight - 1
+                        && in[i - 1] > 0 && in[i + 1] > 0 && in[i - mWidth] > 0
+                        && in[i + mWidth] > 0) {
+                    eroded[i] = depth;
+                    valid++;
+                } else {
+                    eroded[i] = 0;
+                }
+            }
+        }
+        out.mValidCount = valid;
+    }
+
+    /**
+     * Writes the magnitude of the depth gradient of each pixel into out, in meters per pixel,
+     * using central differences. Pixels on the border or next to a pixel without depth get 0.
+     *
+     * @param out Holds at least width * height floats.
+     */
+    public void computeGradient(float[] out) {
+        float[] depths = mDepths;
+        for (int y = 0; y < mHeight; y++) {
+            for (int x = 0; x < mWidth; x++) {
+                int i = y * mWidth + x;
+                if (x == 0 || x == mWidth - 1 || y == 0 || y == mHeight - 1) {
+                    out[i] = 0;
+                    continue;
+                }
+                float left = depths[i - 1];
+                float right = depths[i + 1];
+                float up = depths[i - mWidth];
+                float down = depths[i + mWidth];
+                if (depths[i] == 0 || left == 0 || right == 0 || up == 0 || down == 0) {
+                    out[i] = 0;
+                    continue;
+                }
+                float dx = (right - left) * 0.5f;
+                float dy = (down - up) * 0.5f;
+                out[i] = (float) Math.sqrt(dx * dx + dy * dy);
+            }
+        }
+    }
+
+    /**
+     * Labels the connected surfaces of the image: 4-connected pixels with a depth belong to the
+     * same component when their depths differ by at most maxDepthStep.
+     *
+     * @param maxDepthStep Largest depth difference between neighbours of a surface, in meters.
+     * @param labels       Receives the component of each pixel, numbered from 0 in scan order,
+     *                     or -1 for the pixels without depth. Holds at least width * height ints.
+     * @return the number of components.
+     */
+    public int labelComponents(float maxDepthStep, int[] labels) {
+        int pixelCount = mWidth * mHeight;
+        if (mPending == null) {
+            mPending = new int[pixelCount];
+        }
+        float[] depths = mDepths;
+        for (int i = 0; i < pixelCount; i++) {
+            labels[i] = -1;
+        }
+        int componentCount = 0;
+        for (int seed = 0; seed < pixelCount; seed++) {
+            if (depths[seed] == 0 || labels[seed] >= 0) {
+                continue;
+            }
+            // Flood fill from the seed. Pixels are labelled when queued, so queued at most once.
+            int label = componentCount++;
+            labels[seed] = label;
+            mPending[0] = seed;
+            int pendingCount = 1;
+            while (pendingCount > 0) {
+                int i = mPending[--pendingCount];
+                int x = i % mWidth;
+                float depth = depths[i];
+                if (x > 0) {
+                    pendingCount = visit(i - 1, depth, maxDepthStep, label, labels, pendingCount);
+                }
+                if (x < mWidth - 1) {
+                    pendingCount = visit(i + 1, depth, maxDepthStep, label, labels, pendingCount);
+                }
+                if (i >= mWidth) {
+                    pendingCount = visit(i - mWidth, depth, maxDepthStep, label, labels,
+                            pendingCount);
+                }
+                if (i < pixelCount - mWidth) {
+                    pendingCount = visit(i + mWidth, depth, maxDepthStep, label, labels,
+                            pendingCount);
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    private int visit(int neighbour, float depth, float maxDepthStep, int label, int[] labels,
+                      int pendingCount) {
+        float neighbourDepth = mDepths[neighbour];
+        if (neighbourDepth == 0 || labels[neighbour] >= 0
+                || Math.abs(neighbourDepth - depth) > maxDepthStep) {
+            return pendingCount;
+        }
+        labels[neighbour] = label;
+        mPending[pendingCount] = neighbour;
+        return pendingCount + 1;
+    }
+
+    private void checkSameSize(DepthImage other) {
+        if (other == this || other.mWidth != mWidth || other.mHeight != mHeight) {
+            throw new IllegalArgumentException("Expected a distinct image of " + mWidth + "x"
+                    + mHeight + " pixels");
+        }
+    }
+}
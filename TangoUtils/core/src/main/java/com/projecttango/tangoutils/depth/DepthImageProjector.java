@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.depth;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Projects depth clouds into depth images through the pinhole model of a camera, turning the
+ * unorganized points of a cloud into a grid where neighbouring points are neighbouring pixels.
+ *
+ * The image is a fraction of the camera resolution, so that every pixel gets several points of
+ * the cloud. When several points fall into the same pixel, the nearest one is kept, like a
+ * z-buffer. The intrinsics are given as plain values, e.g. those of
+ * <code>TangoCameraIntrinsics</code>, so this class doesn't depend on the Tango API.
+ *
+ * Projecting only reads the cloud and writes into the given image, so a projector can be shared
+ * by threads projecting into different images.
+ */
+public class DepthImageProjector {
+    private final int mWidth;
+    private final int mHeight;
+    // Intrinsics scaled to the resolution of the image.
+    private final float mFx;
+    private final float mFy;
+    private final float mCx;
+    private final float mCy;
+
+    /**
+     * @param fx           Focal length of the camera along x, in pixels.
+     * @param fy           Focal length of the camera along y, in pixels.
+     * @param cx           Principal point of the camera along x, in pixels.
+     * @param cy           Principal point of the camera along y, in pixels.
+     * @param cameraWidth  Width of the camera image, in pixels.
+     * @param cameraHeight Height of the camera image, in pixels.
+     * @param downsampling Number of camera pixels along each side of an image pixel.
+     */
+    public DepthImageProjector(double fx, double fy, double cx, double cy, int cameraWidth,
+                               int cameraHeight, int downsampling) {
+        mWidth = cameraWidth / downsampling;
+        mHeight = cameraHeight / downsampling;
+        mFx = (float) (fx / downsampling);
+        mFy = (float) (fy / downsampling);
+        mCx = (float) (cx / downsampling);
+        mCy = (float) (cy / downsampling);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Creates an empty image of the resolution of this projector.
+     */
+    public DepthImage createImage() {
+        return new DepthImage(mWidth, mHeight, mFx, mFy, mCx, mCy);
+    }
+
+    /**
+     * Clears the image and projects the first pointCount points of a cloud into it. Points behind
+     * the camera or outside of its field of view are skipped. The buffer is read with absolute
+     * gets, so its position is not modified.
+     *
+     * @param image Image created by this projector.
+     * @return the number of points projected into the image.
+     */
+    public int project(FloatBuffer xyz, int pointCount, DepthImage image) {
+        if (image.getWidth() != mWidth || image.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Expected an image of " + mWidth + "x" + mHeight
+                    + " pixels");
+        }
+        image.clear();
+        float[] depths = image.getDepths();
+        int projected = 0;
+        int valid = 0;
+        for (int i = 0; i < pointCount; i++) {
+            float z = xyz.get(i * 3 + 2);
+            int pixel = getPixel(xyz.get(i * 3), xyz.get(i * 3 + 1), z);
+            if (pixel < 0) {
+                continue;
+            }
+            float depth = depths[pixel];
+            if (depth == 0) {
+                depths[pixel] = z;
+                valid++;
+            } else if (z < depth) {
+                depths[pixel] = z;
+            }
+            projected++;
+        }
+        image.setValidCount(valid);
+        return projected;
+    }
+
+    /**
+     * Gets the index of the image pixel a point projects to, row by row, or -1 if the point is
+     * behind the camera or outside of its field of view.
+     */
+    public int getPixel(float x, float y, float z) {
+        if (!(z > 0)) {
+            return -1;
+        }
+        float u = mFx * x / z + mCx;
+        float v = mFy * y / z + mCy;
+        // Also rejects NaN coordinates.
+        if (!(u >= 0 && u < mWidth && v >= 0 && v < mHeight)) {
+            return -1;
+        }
+        return (int) v * mWidth + (int) u;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.depth;
+
+/**
+ * Estimates the surface normal of each pixel of a depth image from its 4 neighbours.
+ *
+ * The neighbours are turned back into points and the normal is the cross product of the
+ * horizontal and vertical differences, oriented towards the camera. Pixels on the border, next to
+ * a pixel without depth or across a depth discontinuity get no normal, so edges between surfaces
+ * don't produce made up orientations. Normals are written into a caller provided float array, 3
+ * floats per pixel, a zero vector marking the pixels without a normal.
+ *
+ * This class has no state besides its settings and can be shared by threads.
+ */
+public class NormalEstimator {
+    private final float mMaxRelativeDepthStep;
+
+    /**
+     * @param maxRelativeDepthStep Largest depth difference between a pixel and its neighbours, as
+     *                             a fraction of the pixel depth, for them to be on the same
+     *                             surface.
+     */
+    public NormalEstimator(float maxRelativeDepthStep) {
+        mMaxRelativeDepthStep = maxRelativeDepthStep;
+    }
+
+    /**
+     * Writes the unit normal of each pixel of the image, in the camera frame, into normals.
+     *
+     * @param normals Holds at least width * height * 3 floats.
+     * @return the number of pixels with a normal.
+     */
+    public int estimate(DepthImage image, float[] normals) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] depths = image.getDepths();
+        int estimated = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                int n = i * 3;
+                normals[n] = 0;
+                normals[n + 1] = 0;
+                normals[n + 2] = 0;
+                if (x == 0 || x == width - 1 || y == 0 || y == height - 1) {
+                    continue;
+                }
+                float depth = depths[i];
+                float left = depths[i - 1];
+                float right = depths[i + 1];
+                float up = depths[i - width];
+                float down = depths[i + width];
+                float maxStep = depth * mMaxRelativeDepthStep;
+                if (depth == 0 || !isNear(left, depth, maxStep) || !isNear(right, depth, maxStep)
+                        || !isNear(up, depth, maxStep) || !isNear(down, depth, maxStep)) {
+                    continue;
+                }
+                // Horizontal and vertical tangents of the surface.
+                float ax = image.getPointX(x + 1, right) - image.getPointX(x - 1, left);
+                float ay = image.getPointY(y, right) - image.getPointY(y, left);
+                float az = right - left;
+                float bx = image.getPointX(x, down) - image.getPointX(x, up);
+                float by = image.getPointY(y + 1, down) - image.getPointY(y - 1, up);
+                float bz = down - up;
+                float nx = ay * bz - az * by;
+                float ny = az * bx - ax * bz;
+                float nz = ax * by - ay * bx;
+                float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length == 0) {
+                    continue;
+                }
+                // Face the camera, which looks along +z from the origin.
+                float px = image.getPointX(x, depth);
+                float py = image.getPointY(y, depth);
+                if (nx * px + ny * py + nz * depth > 0) {
+                    length = -length;
+                }
+                normals[n] = nx / length;
+                normals[n + 1] = ny / length;
+                normals[n + 2] = nz / length;
+                estimated++;
+            }
+        }
+        return estimated;
+    }
+
+    private static boolean isNear(float neighbourDepth, float depth, float maxStep) {
+        return neighbourDepth != 0 && Math.abs(neighbourDepth - depth) <= maxStep;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.depth;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Labels the pixels of a depth image as floor, wall or overhang from their normals, so that the
+ * walkable floor can be removed from the cloud before the occupancy grid is built.
+ *
+ * The labels depend on the angle between the normal and the up direction, in the camera frame:
+ * <ul>
+ * <li>Floor: facing up and at least <code>minFloorDrop</code> below the camera.</li>
+ * <li>Overhang: facing down, like the underside of a table or a low ceiling.</li>
+ * <li>Wall: everything else with a normal, including raised horizontal surfaces like steps or
+ * table tops, which are in the way as much as walls are.</li>
+ * </ul>
+ * The up direction defaults to the device held upright, and should be updated from the device
+ * pose with <code>setUpDirection</code> before each cloud.
+ *
+ * This class is not thread safe.
+ */
+public class SurfaceClassifier {
+    public static final byte LABEL_UNKNOWN = 0;
+    public static final byte LABEL_FLOOR = 1;
+    public static final byte LABEL_WALL = 2;
+    public static final byte LABEL_OVERHANG = 3;
+    private static final int LABEL_COUNT = 4;
+
+    private final float mMinHorizontalCosine;
+    private final float mMinFloorDrop;
+    // Up direction in the camera frame, whose y axis points down when the device is upright.
+    private float mUpX = 0;
+    private float mUpY = -1;
+    private float mUpZ = 0;
+    private final int[] mLabelCounts = new int[LABEL_COUNT];
+
+    /**
+     * @param maxHorizontalAngle Largest angle between the normal of a horizontal surface and the
+     *                           vertical, in degrees.
+     * @param minFloorDrop       Smallest height of the camera above a horizontal surface for it to
+     *                           be the floor, in meters.
+     */
+    public SurfaceClassifier(float maxHorizontalAngle, float minFloorDrop) {
+        mMinHorizontalCosine = (float) Math.cos(Math.toRadians(maxHorizontalAngle));
+        mMinFloorDrop = minFloorDrop;
+    }
+
+    /**
+     * Sets the up direction in the camera frame. The vector is normalized.
+     */
+    public void setUpDirection(float x, float y, float z) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0) {
+            return;
+        }
+        mUpX = x / length;
+        mUpY = y / length;
+        mUpZ = z / length;
+    }
+
+    /**
+     * Labels each pixel of the image from the normals estimated on it.
+     *
+     * @param normals Normals written by a <code>NormalEstimator</code> from the image.
+     * @param labels  Receives the label of each pixel. Holds at least width * height bytes.
+     */
+    public void classify(DepthImage image, float[] normals, byte[] labels) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] depths = image.getDepths();
+        for (int label = 0; label < LABEL_COUNT; label++) {
+            mLabelCounts[label] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                float nx = normals[i * 3];
+                float ny = normals[i * 3 + 1];
+                float nz = normals[i * 3 + 2];
+                byte label;
+                if (nx == 0 && ny == 0 && nz == 0) {
+                    label = LABEL_UNKNOWN;
+                } else {
+                    float cosine = nx * mUpX + ny * mUpY + nz * mUpZ;
+                    if (cosine >= mMinHorizontalCosine) {
+                        float depth = depths[i];
+                        float elevation = image.getPointX(x, depth) * mUpX
+                                + image.getPointY(y, depth) * mUpY + depth * mUpZ;
+                        label = elevation <= -mMinFloorDrop ? LABEL_FLOOR : LABEL_WALL;
+                    } else if (cosine <= -mMinHorizontalCosine) {
+                        label = LABEL_OVERHANG;
+                    } else {
+                        label = LABEL_WALL;
+                    }
+                }
+                labels[i] = label;
+                mLabelCounts[label]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of pixels given a label by the last classification.
+     */
+    public int getLabelCount(byte label) {
+        return mLabelCounts[label];
+    }
+
+    /**
+     * Removes the points of a cloud falling into pixels with the given label, compacting the
+     * kept points in place at the start of the buffer.
+     *
+     * @param projector Projector of the classified image.
+     * @param labels    Labels of the classified image.
+     * @return the number of points kept.
+     */
+    public static int removeLabel(FloatBuffer xyz, int pointCount, DepthImageProjector projector,
+                                  byte[] labels, byte label) {
+        int kept = 0;
+        for (int i = 0; i < pointCount; i++) {
+            float x = xyz.get(i * 3);
+            float y = xyz.get(i * 3 + 1);
+            float z = xyz.get(i * 3 + 2);
+            int pixel = projector.getPixel(x, y, z);
+            if (pixel >= 0 && labels[pixel] == label) {
+                continue;
+            }
+            if (kept != i) {
+                xyz.put(kept * 3, x);
+                xyz.put(kept * 3 + 1, y);
+                xyz.put(kept * 3 + 2, z);
+            }
+            kept++;
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts garbage collections without any platform API, e.g. on Android versions where the runtime
+ * GC statistics aren't available.
+ *
+ * An unreachable sentinel object increments the count from its finalizer and replaces itself, so
+ * every collection that finalizes the sentinel is counted. Collections that don't reach the
+ * sentinel, e.g. some young generation collections, are missed, so this is a lower bound.
+ */
+public final class GcCounter {
+    private static final AtomicLong sCount = new AtomicLong();
+    private static volatile boolean sStarted = false;
+
+    private GcCounter() {
+    }
+
+    /**
+     * Starts counting. Calling this more than once has no effect.
+     */
+    public static synchronized void start() {
+        if (!sStarted) {
+            sStarted = true;
+            new Sentinel();
+        }
+    }
+
+    /**
+     * Gets the number of collections seen since <code>start</code> was called.
+     */
+    public static long getCount() {
+        return sCount.get();
+    }
+
+    private static class Sentinel {
+        @Override
+        protected void finalize() throws Throwable {
+            try {
+                sCount.incrementAndGet();
+                new Sentinel();
+            } finally {
+                super.finalize();
+            }
+        }
+    }
+}
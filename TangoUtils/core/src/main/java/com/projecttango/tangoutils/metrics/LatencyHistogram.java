@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with fixed power of two buckets, from 1 microsecond to about 2 seconds.
+ *
+ * Bucket i counts the durations between 2^(i-1) and 2^i microseconds, so recording a duration is a
+ * leading zero count and an atomic increment, without locks or allocation. Percentiles are
+ * estimated as the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+    public static final int BUCKET_COUNT = 22;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final StripedCounter mTotalMicros = new StripedCounter();
+    private volatile long mLastMicros = 0;
+
+    /**
+     * Records the time elapsed since the given <code>System.nanoTime()</code> value.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        mBuckets.incrementAndGet(getBucket(micros));
+        mTotalMicros.add(micros);
+        mLastMicros = micros;
+    }
+
+    /**
+     * Gets the most recently recorded duration, in microseconds, without copying the buckets.
+     */
+    public long getLastMicros() {
+        return mLastMicros;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mTotalMicros.reset();
+        mLastMicros = 0;
+    }
+
+    /**
+     * Copies the current bucket counts.
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new Snapshot(buckets, mTotalMicros.get());
+    }
+
+    /**
+     * Gets the upper bound of a bucket, in microseconds.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    private static int getBucket(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Bucket counts of a histogram at some point in time.
+     */
+    public static class Snapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mTotalMicros;
+
+        Snapshot(long[] buckets, long totalMicros) {
+            mBuckets = buckets;
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            mCount = count;
+            mTotalMicros = totalMicros;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Gets the mean duration, in microseconds, or 0 if nothing was recorded.
+         */
+        public double getMeanMicros() {
+            return mCount == 0 ? 0 : (double) mTotalMicros / mCount;
+        }
+
+        /**
+         * Gets an upper bound of the given percentile of the durations, in microseconds.
+         *
+         * @param percentile Between 0 and 100.
+         */
+        public long getPercentileMicros(double percentile) {
+            long rank = (long) Math.ceil(mCount * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return getBucketUpperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        public long[] getBuckets() {
+            return mBuckets.clone();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named counters, latency histograms and gauges of the depth to feedback pipeline.
+ *
+ * Metrics are registered once at startup and the returned objects are kept by the instrumented
+ * code, so updating a metric never looks up a name nor allocates. Registering an existing name
+ * returns the existing metric. <code>snapshot</code> copies every value at once, for display or
+ * periodic dumps with <code>MetricsReporter</code>.
+ */
+public class MetricsRegistry {
+    private final Map<String, StripedCounter> mCounters =
+            new LinkedHashMap<String, StripedCounter>();
+    private final Map<String, LatencyHistogram> mHistograms =
+            new LinkedHashMap<String, LatencyHistogram>();
+    private final Map<String, Gauge> mGauges = new LinkedHashMap<String, Gauge>();
+
+    public synchronized StripedCounter counter(String name) {
+        StripedCounter counter = mCounters.get(name);
+        if (counter == null) {
+            counter = new StripedCounter();
+            mCounters.put(name, counter);
+        }
+        return counter;
+    }
+
+    public synchronized LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            mHistograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     */
+    public synchronized void gauge(String name, Gauge gauge) {
+        mGauges.put(name, gauge);
+    }
+
+    /**
+     * Copies the current value of every metric.
+     */
+    public synchronized MetricsSnapshot snapshot() {
+        Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> entry : mCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : mGauges.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        Map<String, LatencyHistogram.Snapshot> histograms =
+                new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+        for (Map.Entry<String, LatencyHistogram> entry : mHistograms.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new MetricsSnapshot(System.nanoTime(), counters, histograms);
+    }
+
+    /**
+     * Resets every counter and histogram. Gauges are owned by their components and left as is.
+     */
+    public synchronized void reset() {
+        for (StripedCounter counter : mCounters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+    }
+}
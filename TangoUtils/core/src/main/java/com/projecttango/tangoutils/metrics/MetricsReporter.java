@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically dumps a snapshot of a <code>MetricsRegistry</code> to a <code>Sink</code> from a
+ * background thread, with rates computed since the previous dump.
+ */
+public class MetricsReporter {
+    /**
+     * Destination of the formatted metrics, e.g. logcat.
+     */
+    public interface Sink {
+        void report(MetricsSnapshot snapshot, String formatted);
+    }
+
+    private final MetricsRegistry mRegistry;
+    private final long mPeriodMs;
+    private final Sink mSink;
+    private ScheduledExecutorService mExecutor;
+    private volatile RuntimeException mError;
+    // Only accessed by the reporter thread.
+    private MetricsSnapshot mPrevious;
+
+    public MetricsReporter(MetricsRegistry registry, long periodMs, Sink sink) {
+        mRegistry = registry;
+        mPeriodMs = periodMs;
+        mSink = sink;
+    }
+
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+        mPrevious = mRegistry.snapshot();
+        mError = null;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MetricsReporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, mPeriodMs, mPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    private void report() {
+        MetricsSnapshot snapshot = mRegistry.snapshot();
+        try {
+            mSink.report(snapshot, snapshot.format(mPrevious));
+        } catch (RuntimeException e) {
+            // Keep reporting: an exception would cancel every following dump.
+            mError = e;
+        }
+        mPrevious = snapshot;
+    }
+
+    /**
+     * Gets the last exception thrown by the sink, or null if every dump succeeded.
+     */
+    public RuntimeException getError() {
+        return mError;
+    }
+
+    /**
+     * Sink appending every dump to a text file, one block per dump.
+     */
+    public static class FileSink implements Sink {
+        private final String mPath;
+
+        public FileSink(String path) {
+            mPath = path;
+        }
+
+        @Override
+        public void report(MetricsSnapshot snapshot, String formatted) {
+            Writer writer = null;
+            try {
+                writer = new FileWriter(mPath, true);
+                writer.write("t=" + snapshot.getTimestampNanos() / 1000000 + "ms\n");
+                writer.write(formatted);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write metrics to " + mPath, e);
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        // Nothing left to do.
+                    }
+                }
+            }
+        }
+    }
+}
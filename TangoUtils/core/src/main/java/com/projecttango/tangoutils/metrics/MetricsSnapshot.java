@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Values of every metric of a <code>MetricsRegistry</code> at some point in time.
+ *
+ * Counters and gauges share the same namespace. Rates are computed against an earlier snapshot,
+ * e.g. the previous periodic dump.
+ */
+public class MetricsSnapshot {
+    private final long mTimestampNanos;
+    private final Map<String, Long> mCounters;
+    private final Map<String, LatencyHistogram.Snapshot> mHistograms;
+
+    MetricsSnapshot(long timestampNanos, Map<String, Long> counters,
+                    Map<String, LatencyHistogram.Snapshot> histograms) {
+        mTimestampNanos = timestampNanos;
+        mCounters = Collections.unmodifiableMap(counters);
+        mHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Gets the <code>System.nanoTime()</code> value at which the snapshot was taken.
+     */
+    public long getTimestampNanos() {
+        return mTimestampNanos;
+    }
+
+    /**
+     * Gets the value of a counter or gauge, or 0 if there is no such metric.
+     */
+    public long getCounter(String name) {
+        Long value = mCounters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Gets a histogram, or null if there is no such metric.
+     */
+    public LatencyHistogram.Snapshot getHistogram(String name) {
+        return mHistograms.get(name);
+    }
+
+    public Map<String, Long> getCounters() {
+        return mCounters;
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> getHistograms() {
+        return mHistograms;
+    }
+
+    /**
+     * Gets how many times per second a counter or histogram was updated since an earlier
+     * snapshot.
+     */
+    public double getRate(String name, MetricsSnapshot previous) {
+        double seconds = (mTimestampNanos - previous.mTimestampNanos) / 1e9;
+        if (seconds <= 0) {
+            return 0;
+        }
+        LatencyHistogram.Snapshot histogram = mHistograms.get(name);
+        if (histogram != null) {
+            LatencyHistogram.Snapshot before = previous.mHistograms.get(name);
+            long count = before == null ? 0 : before.getCount();
+            return (histogram.getCount() - count) / seconds;
+        }
+        return (getCounter(name) - previous.getCounter(name)) / seconds;
+    }
+
+    /**
+     * Formats every metric as one line per metric, with rates since the previous snapshot if one
+     * is given.
+     */
+    public String format(MetricsSnapshot previous) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue());
+            if (previous != null) {
+                builder.append(String.format(Locale.US, " (%.1f/s)",
+                        getRate(entry.getKey(), previous)));
+            }
+            builder.append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : mHistograms.entrySet()) {
+            LatencyHistogram.Snapshot histogram = entry.getValue();
+            builder.append(String.format(Locale.US,
+                    "%s: n=%d mean=%.0fus p50<=%dus p90<=%dus p99<=%dus",
+                    entry.getKey(), histogram.getCount(), histogram.getMeanMicros(),
+                    histogram.getPercentileMicros(50), histogram.getPercentileMicros(90),
+                    histogram.getPercentileMicros(99)));
+            if (previous != null) {
+                builder.append(String.format(Locale.US, " (%.1f/s)",
+                        getRate(entry.getKey(), previous)));
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that can be incremented from several threads with little contention.
+ *
+ * Like <code>java.util.concurrent.atomic.LongAdder</code>, which isn't available on Android before
+ * API level 24, updates are spread over several cells picked from the calling thread id, each on
+ * its own cache line, and <code>get</code> sums them. Updates never allocate.
+ */
+public class StripedCounter {
+    private static final int STRIPES = 8;
+    // Longs between two cells, so that every cell sits on its own 64 byte cache line.
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long value) {
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        mCells.getAndAdd(stripe * PADDING, value);
+    }
+
+    /**
+     * Gets the sum of every update so far. Not atomic with respect to concurrent updates.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            mCells.set(i * PADDING, 0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.obstacles;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Compares consecutive snapshots of the occupancy grid and reports only the cells that changed.
+ *
+ * A cell has to stay in its new state for a configurable number of consecutive snapshots before
+ * the change is accepted, which filters out cells flickering because of depth noise. Accepted
+ * changes are kept as pending events per cell until consumed, so the producer (grid update) and
+ * the consumer (sonification) can run in different threads and at different rates. A newer
+ * change replaces an unconsumed older one in the same cell.
+ */
+public class GridDiffer {
+    public static final int CHANGE_NONE = 0;
+    public static final int CHANGE_OCCUPIED = 1;
+    public static final int CHANGE_CLEARED = 2;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mDebounceSnapshots;
+
+    // Only accessed by the thread calling update.
+    private final boolean[] mStable;
+    private final int[] mDisagreeCount;
+
+    // Pending change of each cell, one of the CHANGE_ constants.
+    private final AtomicIntegerArray mPendingChanges;
+
+    /**
+     * @param debounceSnapshots Number of consecutive snapshots a cell must keep a new state
+     *                          before its change is reported. 1 reports every change right away.
+     */
+    public GridDiffer(int width, int height, int debounceSnapshots) {
+        mWidth = width;
+        mHeight = height;
+        mDebounceSnapshots = Math.max(1, debounceSnapshots);
+        mStable = new boolean[width * height];
+        mDisagreeCount = new int[width * height];
+        mPendingChanges = new AtomicIntegerArray(width * height);
+    }
+
+    /**
+     * Compares a new snapshot against the stable state.
+     *
+     * @param grid Occupancy grid indexed by [row][column], non zero cells being occupied.
+     * @return the number of changes accepted in this snapshot.
+     */
+    public int update(int[][] grid) {
+        int changes = 0;
+        for (int row = 0; row < mHeight; row++) {
+            int[] gridRow = grid[row];
+            for (int column = 0; column < mWidth; column++) {
+                int cell = row * mWidth + column;
+                boolean occupied = gridRow[column] != 0;
+                if (occupied == mStable[cell]) {
+                    mDisagreeCount[cell] = 0;
+                } else if (++mDisagreeCount[cell] >= mDebounceSnapshots) {
+                    mStable[cell] = occupied;
+                    mDisagreeCount[cell] = 0;
+                    mPendingChanges.set(cell, occupied ? CHANGE_OCCUPIED : CHANGE_CLEARED);
+                    changes++;
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Returns and clears the pending change of a cell. Can be called from any thread.
+     *
+     * @return one of the CHANGE_ constants.
+     */
+    public int consumeChange(int row, int column) {
+        return mPendingChanges.getAndSet(row * mWidth + column, CHANGE_NONE);
+    }
+
+    /**
+     * Forgets the stable state and every pending change. Must be called from the thread calling
+     * update.
+     */
+    public void reset() {
+        for (int cell = 0; cell < mStable.length; cell++) {
+            mStable[cell] = false;
+            mDisagreeCount[cell] = 0;
+            mPendingChanges.set(cell, CHANGE_NONE);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.obstacles;
+
+/**
+ * Immutable sequence of vibration pulses.
+ *
+ * Each step is a pulse strength (one of the PULSE_ constants) followed by the time to wait before
+ * the next step.
+ */
+public class HapticPattern {
+    public static final int PULSE_SHORT = 0;
+    public static final int PULSE_MEDIUM = 1;
+    public static final int PULSE_LONG = 2;
+
+    private final int[] mPulses;
+    private final long[] mGapsMs;
+    private final int mStrength;
+
+    /**
+     * @param pulses Strength of each pulse, one of the PULSE_ constants.
+     * @param gapsMs Time to wait after each pulse before the next step, in milliseconds.
+     */
+    public HapticPattern(int[] pulses, long[] gapsMs) {
+        mPulses = pulses.clone();
+        mGapsMs = gapsMs.clone();
+        int strength = 0;
+        for (int pulse : pulses) {
+            strength = Math.max(strength, pulse);
+        }
+        // Stronger pulses first, then more pulses.
+        mStrength = strength * 16 + pulses.length;
+    }
+
+    /**
+     * Creates a pattern of a single pulse.
+     */
+    public static HapticPattern single(int pulse) {
+        return new HapticPattern(new int[] {pulse}, new long[] {0});
+    }
+
+    public int getStepCount() {
+        return mPulses.length;
+    }
+
+    public int getPulse(int step) {
+        return mPulses[step];
+    }
+
+    public long getGapMs(int step) {
+        return mGapsMs[step];
+    }
+
+    /**
+     * Gets a value to compare how noticeable patterns are, higher being stronger.
+     */
+    public int getStrength() {
+        return mStrength;
+    }
+}
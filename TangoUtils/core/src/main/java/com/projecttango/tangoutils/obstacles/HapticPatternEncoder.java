@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.obstacles;
+
+/**
+ * Turns the free space balance and the distance to the nearest obstacle into a vibration pattern.
+ *
+ * The number of pulses tells where there is more free space: one pulse for the left, two for the
+ * right and three when both sides are equally blocked. The closer the obstacle, the stronger the
+ * pulses and the shorter the gaps between them. Every pattern is built once in a lookup table, so
+ * encoding is just two bucket computations and an array read.
+ */
+public class HapticPatternEncoder {
+    // Free space asymmetry buckets, from much more room on the right to much more on the left.
+    private static final int ASYMMETRY_BUCKETS = 5;
+    private static final int BALANCED_BUCKET = ASYMMETRY_BUCKETS / 2;
+    private static final int DISTANCE_NEAR = 0;
+    private static final int DISTANCE_MID = 1;
+    private static final int DISTANCE_FAR = 2;
+    private static final int DISTANCE_BUCKETS = 3;
+
+    // Gap between pulses for each distance bucket, in milliseconds.
+    private static final long[] GAPS_MS = {320, 400, 500};
+    // Pulse strength for each distance bucket.
+    private static final int[] PULSES = {
+            HapticPattern.PULSE_LONG, HapticPattern.PULSE_MEDIUM, HapticPattern.PULSE_SHORT
+    };
+
+    private final float mNearDistance;
+    private final float mFarDistance;
+    // Pattern of each [asymmetry][distance] bucket, null for no feedback.
+    private final HapticPattern[][] mPatterns =
+            new HapticPattern[ASYMMETRY_BUCKETS][DISTANCE_BUCKETS];
+
+    /**
+     * @param nearDistance Obstacles closer than this, in meters, get the strongest patterns.
+     * @param farDistance  Obstacles farther than this, in meters, get the weakest patterns.
+     */
+    public HapticPatternEncoder(float nearDistance, float farDistance) {
+        mNearDistance = nearDistance;
+        mFarDistance = farDistance;
+        for (int asymmetry = 0; asymmetry < ASYMMETRY_BUCKETS; asymmetry++) {
+            int pulseCount;
+            if (asymmetry > BALANCED_BUCKET) {
+                pulseCount = 1;
+            } else if (asymmetry < BALANCED_BUCKET) {
+                pulseCount = 2;
+            } else {
+                pulseCount = 3;
+            }
+            for (int distance = 0; distance < DISTANCE_BUCKETS; distance++) {
+                if (asymmetry == BALANCED_BUCKET && distance == DISTANCE_FAR) {
+                    // Nothing close and no better side to suggest.
+                    continue;
+                }
+                int[] pulses = new int[pulseCount];
+                long[] gaps = new long[pulseCount];
+                for (int i = 0; i < pulseCount; i++) {
+                    pulses[i] = PULSES[distance];
+                    gaps[i] = GAPS_MS[distance];
+                }
+                mPatterns[asymmetry][distance] = new HapticPattern(pulses, gaps);
+            }
+        }
+    }
+
+    /**
+     * Gets the pattern for the given free space counts and nearest obstacle distance.
+     *
+     * @param leftEmpty       Number of free cells in the left half of the grid.
+     * @param rightEmpty      Number of free cells in the right half of the grid.
+     * @param nearestDistance Distance to the nearest obstacle, in meters.
+     * @return the pattern to play, or null if no feedback is needed.
+     */
+    public HapticPattern encode(int leftEmpty, int rightEmpty, float nearestDistance) {
+        int total = leftEmpty + rightEmpty;
+        float asymmetry = total == 0 ? 0 : (float) (leftEmpty - rightEmpty) / total;
+        int asymmetryBucket = Math.round((asymmetry + 1f) / 2f * (ASYMMETRY_BUCKETS - 1));
+
+        int distanceBucket;
+        if (nearestDistance < mNearDistance) {
+            distanceBucket = DISTANCE_NEAR;
+        } else if (nearestDistance < mFarDistance) {
+            distanceBucket = DISTANCE_MID;
+        } else {
+            distanceBucket = DISTANCE_FAR;
+        }
+        return mPatterns[asymmetryBucket][distanceBucket];
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.obstacles;
+
+import java.util.Arrays;
+
+/**
+ * Groups the occupied cells of an <code>OccupancyGrid</code> into obstacles and follows them from
+ * one grid update to the next.
+ *
+ * Occupied cells touching each other, diagonals included, are merged with a union-find over a
+ * primitive parent array, in a single scan of the grid. Each obstacle of at least
+ * <code>minCells</code> cells gets a bounding box, a centroid and the distance to its nearest
+ * point, all in grid cells except the distance. An obstacle keeps the id of the obstacle of the
+ * previous update it overlaps the most, or gets a new id. The overlaps are counted only for the
+ * cells occupied in both updates, so matching is linear in the number of occupied cells.
+ * Everything is preallocated for the largest possible number of obstacles, so updating doesn't
+ * allocate.
+ *
+ * <code>update</code> and the getters must be called from the same thread.
+ */
+public class ObstacleClusterer {
+    private final int mWidth;
+    private final int mHeight;
+    private final int mMinCells;
+    private final int mMaxClusters;
+
+    // Union-find parent of each cell, -1 for free cells.
+    private final int[] mParents;
+    // Cluster of each cell, -1 for free cells and dropped clusters, and the same of the previous
+    // update.
+    private int[] mLabels;
+    private int[] mPreviousLabels;
+    // Cluster of each union-find root, -1 if not assigned yet.
+    private final int[] mRootClusters;
+
+    private int mClusterCount = 0;
+    private int mPreviousClusterCount = 0;
+    private int mNextId = 0;
+    private int[] mIds;
+    private int[] mPreviousIds;
+    private final int[] mCellCounts;
+    private final int[] mMinRows;
+    private final int[] mMaxRows;
+    private final int[] mMinColumns;
+    private final int[] mMaxColumns;
+    private final float[] mRowSums;
+    private final float[] mColumnSums;
+    private final float[] mNearestDistances;
+    // Index of the kept cluster of each candidate cluster, -1 if dropped.
+    private final int[] mKeptClusters;
+    // Start of the shared cells of each cluster in mSharedPrevious, plus the end of the last one.
+    private final int[] mSharedStarts;
+    // Previous cluster of each cell occupied in both updates, grouped by cluster.
+    private final int[] mSharedPrevious;
+    // Number of shared cells of the current cluster with each previous cluster, 0 between uses.
+    private final int[] mPreviousOverlaps;
+    // Cluster, previous cluster and number of shared cells of each overlapping pair.
+    private final int[] mPairClusters;
+    private final int[] mPairPrevious;
+    private final int[] mPairOverlaps;
+    // Pairs by decreasing overlap, and the counting sort buckets used to order them.
+    private final int[] mSortedPairs;
+    private final int[] mOverlapStarts;
+
+    /**
+     * @param minCells Smallest number of cells of an obstacle. Smaller groups are ignored as
+     *                 noise.
+     */
+    public ObstacleClusterer(int width, int height, int minCells) {
+        mWidth = width;
+        mHeight = height;
+        mMinCells = Math.max(1, minCells);
+        // Occupied cells with a free cell on every side, i.e. every other cell of every other row.
+        mMaxClusters = ((width + 1) / 2) * ((height + 1) / 2);
+        int cellCount = width * height;
+        mParents = new int[cellCount];
+        mLabels = new int[cellCount];
+        mPreviousLabels = new int[cellCount];
+        mRootClusters = new int[cellCount];
+        Arrays.fill(mLabels, -1);
+        Arrays.fill(mPreviousLabels, -1);
+        mIds = new int[mMaxClusters];
+        mPreviousIds = new int[mMaxClusters];
+        mCellCounts = new int[mMaxClusters];
+        mMinRows = new int[mMaxClusters];
+        mMaxRows = new int[mMaxClusters];
+        mMinColumns = new int[mMaxClusters];
+        mMaxColumns = new int[mMaxClusters];
+        mRowSums = new float[mMaxClusters];
+        mColumnSums = new float[mMaxClusters];
+        mNearestDistances = new float[mMaxClusters];
+        mKeptClusters = new int[mMaxClusters];
+        mSharedStarts = new int[mMaxClusters + 1];
+        mSharedPrevious = new int[cellCount];
+        mPreviousOverlaps = new int[mMaxClusters];
+        // A pair shares at least one cell, so there are at most as many pairs as cells.
+        mPairClusters = new int[cellCount];
+        mPairPrevious = new int[cellCount];
+        mPairOverlaps = new int[cellCount];
+        mSortedPairs = new int[cellCount];
+        mOverlapStarts = new int[cellCount + 2];
+    }
+
+    /**
+     * Finds the obstacles of the grid and matches them with those of the previous update.
+     *
+     * @return the number of obstacles.
+     */
+    public int update(OccupancyGrid grid) {
+        if (grid.getWidth() != mWidth || grid.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Expected a grid of " + mWidth + "x" + mHeight
+                    + " cells");
+        }
+        int[] swap = mPreviousLabels;
+        mPreviousLabels = mLabels;
+        mLabels = swap;
+        swap = mPreviousIds;
+        mPreviousIds = mIds;
+        mIds = swap;
+        mPreviousClusterCount = mClusterCount;
+
+        unionCells(grid.getCells());
+        int candidateCount = measureClusters(grid);
+        mClusterCount = dropSmallClusters(candidateCount);
+        matchClusters();
+        return mClusterCount;
+    }
+
+    /**
+     * Merges every occupied cell with its occupied neighbours above and to the left.
+     */
+    private void unionCells(int[][] cells) {
+        for (int row = 0; row < mHeight; row++) {
+            int[] rowCells = cells[row];
+            for (int column = 0; column < mWidth; column++) {
+                int cell = row * mWidth + column;
+                mRootClusters[cell] = -1;
+                if (rowCells[column] == 0) {
+                    mParents[cell] = -1;
+                    continue;
+                }
+                mParents[cell] = cell;
+                if (column > 0 && rowCells[column - 1] != 0) {
+                    union(cell, cell - 1);
+                }
+                if (row > 0) {
+                    int[] above = cells[row - 1];
+                    if (column > 0 && above[column - 1] != 0) {
+                        union(cell, cell - mWidth - 1);
+                    }
+                    if (above[column] != 0) {
+                        union(cell, cell - mWidth);
+                    }
+                    if (column < mWidth - 1 && above[column + 1] != 0) {
+                        union(cell, cell - mWidth + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns a cluster to every union-find root and accumulates the cells of each cluster.
+     *
+     * @return the number of clusters.
+     */
+    private int measureClusters(OccupancyGrid grid) {
+        int clusterCount = 0;
+        for (int row = 0; row < mHeight; row++) {
+            for (int column = 0; column < mWidth; column++) {
+                int cell = row * mWidth + column;
+                if (mParents[cell] < 0) {
+                    mLabels[cell] = -1;
+                    continue;
+                }
+                int root = find(cell);
+                int cluster = mRootClusters[root];
+                float distance = grid.getDistance(row, column);
+                if (cluster < 0) {
+                    cluster = mRootClusters[root] = clusterCount++;
+                    mCellCounts[cluster] = 0;
+                    mMinRows[cluster] = row;
+                    mMaxRows[cluster] = row;
+                    mMinColumns[cluster] = column;
+                    mMaxColumns[cluster] = column;
+                    mRowSums[cluster] = 0;
+                    mColumnSums[cluster] = 0;
+                    mNearestDistances[cluster] = distance;
+                }
+                mLabels[cell] = cluster;
+                mCellCounts[cluster]++;
+                // Cells are scanned in order, so the first row is already the smallest.
+                mMaxRows[cluster] = row;
+                mMinColumns[cluster] = Math.min(mMinColumns[cluster], column);
+                mMaxColumns[cluster] = Math.max(mMaxColumns[cluster], column);
+                mRowSums[cluster] += row;
+                mColumnSums[cluster] += column;
+                mNearestDistances[cluster] = Math.min(mNearestDistances[cluster], distance);
+            }
+        }
+        return clusterCount;
+    }
+
+    /**
+     * Compacts the clusters of at least mMinCells cells at the start of the arrays.
+     *
+     * @return the number of clusters kept.
+     */
+    private int dropSmallClusters(int candidateCount) {
+        int kept = 0;
+        for (int cluster = 0; cluster < candidateCount; cluster++) {
+            if (mCellCounts[cluster] < mMinCells) {
+                mKeptClusters[cluster] = -1;
+                continue;
+            }
+            mKeptClusters[cluster] = kept;
+            if (kept != cluster) {
+                mCellCounts[kept] = mCellCounts[cluster];
+                mMinRows[kept] = mMinRows[cluster];
+                mMaxRows[kept] = mMaxRows[cluster];
+                mMinColumns[kept] = mMinColumns[cluster];
+                mMaxColumns[kept] = mMaxColumns[cluster];
+                mRowSums[kept] = mRowSums[cluster];
+                mColumnSums[kept] = mColumnSums[cluster];
+                mNearestDistances[kept] = mNearestDistances[cluster];
+            }
+            kept++;
+        }
+        if (kept != candidateCount) {
+            for (int cell = 0; cell < mLabels.length; cell++) {
+                if (mLabels[cell] >= 0) {
+                    mLabels[cell] = mKeptClusters[mLabels[cell]];
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Gives each cluster the id of the previous cluster it overlaps the most, pairing the largest
+     * overlaps first, and a new id to the clusters left without a match.
+     */
+    private void matchClusters() {
+        for (int cluster = 0; cluster < mClusterCount; cluster++) {
+            mIds[cluster] = -1;
+        }
+        if (mPreviousClusterCount > 0) {
+            int pairCount = countOverlaps();
+            sortPairs(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+                int pair = mSortedPairs[i];
+                int cluster = mPairClusters[pair];
+                int previous = mPairPrevious[pair];
+                // The previous ids are overwritten on the next update, so a matched one is
+                // cleared to keep it from being matched again.
+                if (mIds[cluster] < 0 && mPreviousIds[previous] >= 0) {
+                    mIds[cluster] = mPreviousIds[previous];
+                    mPreviousIds[previous] = -1;
+                }
+            }
+        }
+        for (int cluster = 0; cluster < mClusterCount; cluster++) {
+            if (mIds[cluster] < 0) {
+                mIds[cluster] = mNextId++;
+            }
+        }
+    }
+
+    /**
+     * Lists the pairs of a cluster and a previous cluster sharing cells, with the number of cells
+     * they share.
+     *
+     * @return the number of pairs.
+     */
+    private int countOverlaps() {
+        // Group the shared cells by cluster with a counting sort, filling each group backwards.
+        Arrays.fill(mSharedStarts, 0, mClusterCount + 1, 0);
+        for (int cell = 0; cell < mLabels.length; cell++) {
+            if (mLabels[cell] >= 0 && mPreviousLabels[cell] >= 0) {
+                mSharedStarts[mLabels[cell]]++;
+            }
+        }
+        for (int cluster = 1; cluster <= mClusterCount; cluster++) {
+            mSharedStarts[cluster] += mSharedStarts[cluster - 1];
+        }
+        for (int cell = 0; cell < mLabels.length; cell++) {
+            int cluster = mLabels[cell];
+            int previous = mPreviousLabels[cell];
+            if (cluster >= 0 && previous >= 0) {
+                mSharedPrevious[--mSharedStarts[cluster]] = previous;
+            }
+        }
+
+        int pairCount = 0;
+        for (int cluster = 0; cluster < mClusterCount; cluster++) {
+            int firstPair = pairCount;
+            for (int i = mSharedStarts[cluster]; i < mSharedStarts[cluster + 1]; i++) {
+                int previous = mSharedPrevious[i];
+                if (mPreviousOverlaps[previous]++ == 0) {
+                    mPairClusters[pairCount] = cluster;
+                    mPairPrevious[pairCount] = previous;
+                    pairCount++;
+                }
+            }
+            for (int pair = firstPair; pair < pairCount; pair++) {
+                int previous = mPairPrevious[pair];
+                mPairOverlaps[pair] = mPreviousOverlaps[previous];
+                mPreviousOverlaps[previous] = 0;
+            }
+        }
+        return pairCount;
+    }
+
+    /**
+     * Orders the pairs by decreasing overlap with a counting sort, keeping the pairs of equal
+     * overlap in cluster order.
+     */
+    private void sortPairs(int pairCount) {
+        int maxOverlap = 0;
+        for (int pair = 0; pair < pairCount; pair++) {
+            maxOverlap = Math.max(maxOverlap, mPairOverlaps[pair]);
+        }
+        // Bucket of each overlap, counted from the largest one.
+        Arrays.fill(mOverlapStarts, 0, maxOverlap + 2, 0);
+        for (int pair = 0; pair < pairCount; pair++) {
+            mOverlapStarts[maxOverlap - mPairOverlaps[pair] + 1]++;
+        }
+        for (int bucket = 1; bucket <= maxOverlap; bucket++) {
+            mOverlapStarts[bucket] += mOverlapStarts[bucket - 1];
+        }
+        for (int pair = 0; pair < pairCount; pair++) {
+            mSortedPairs[mOverlapStarts[maxOverlap - mPairOverlaps[pair]]++] = pair;
+        }
+    }
+
+    private int find(int cell) {
+        // Path halving: every visited cell skips to its grandparent.
+        while (mParents[cell] != cell) {
+            mParents[cell] = mParents[mParents[cell]];
+            cell = mParents[cell];
+        }
+        return cell;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        // The smaller index becomes the root, keeping the roots at the first cells scanned.
+        if (rootA < rootB) {
+            mParents[rootB] = rootA;
+        } else if (rootB < rootA) {
+            mParents[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Gets the number of obstacles found by the last update.
+     */
+    public int getClusterCount() {
+        return mClusterCount;
+    }
+
+    /**
+     * Gets the obstacle of a cell, or -1 if the cell is free or part of a group too small to be
+     * an obstacle.
+     */
+    public int getCluster(int row, int column) {
+        return mLabels[row * mWidth + column];
+    }
+
+    /**
+     * Gets the id of an obstacle, kept from one update to the next while the obstacle overlaps
+     * itself.
+     */
+    public int getId(int cluster) {
+        return mIds[cluster];
+    }
+
+    public int getCellCount(int cluster) {
+        return mCellCounts[cluster];
+    }
+
+    public int getMinRow(int cluster) {
+        return mMinRows[cluster];
+    }
+
+    public int getMaxRow(int cluster) {
+        return mMaxRows[cluster];
+    }
+
+    public int getMinColumn(int cluster) {
+        return mMinColumns[cluster];
+    }
+
+    public int getMaxColumn(int cluster) {
+        return mMaxColumns[cluster];
+    }
+
+    /**
+     * Gets the row of the centroid of an obstacle, in fractional cells.
+     */
+    public float getCentroidRow(int cluster) {
+        return mRowSums[cluster] / mCellCounts[cluster];
+    }
+
+    /**
+     * Gets the column of the centroid of an obstacle, in fractional cells.
+     */
+    public float getCentroidColumn(int cluster) {
+        return mColumnSums[cluster] / mCellCounts[cluster];
+    }
+
+    /**
+     * Gets the distance to the nearest point of an obstacle, in meters.
+     */
+    public float getNearestDistance(int cluster) {
+        return mNearestDistances[cluster];
+    }
+
+    /**
+     * Gets the nearest obstacle, or -1 if there is none.
+     */
+    public int getNearestCluster() {
+        int nearest = -1;
+        for (int cluster = 0; cluster < mClusterCount; cluster++) {
+            if (nearest < 0 || mNearestDistances[cluster] < mNearestDistances[nearest]) {
+                nearest = cluster;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.obstacles;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Turns depth clouds into obstacle warnings.
+ *
+ * Each cloud is binned into an <code>OccupancyGrid</code>, whose changes are tracked by a
+ * <code>GridDiffer</code> for the sonification. When the lower part of the grid shows an obstacle
+ * in the walking path, a haptic pattern telling which side has more free space is sent to the
+ * <code>HapticPlayer</code>.
+ *
+ * <code>update</code> must be called from a single thread.
+ */
+public class ObstacleDetector {
+    // Rows from this one down to the bottom of the grid are checked for obstacles.
+    private static final int COLLISION_TOP_ROW = 4;
+    // Columns this close to either side of the grid are ignored.
+    private static final int COLLISION_SIDE_MARGIN = 2;
+    // Minimum number of horizontally adjacent pairs of occupied cells making an obstacle.
+    private static final int COLLISION_MIN_PAIRS = 2;
+
+    private final OccupancyGrid mGrid;
+    private final GridDiffer mGridDiffer;
+    private final float mMaxDistance;
+    private final float mRowsPerMeter;
+    private final float mColumnsPerMeter;
+    private final HapticPatternEncoder mEncoder;
+    private final HapticPlayer mHapticPlayer;
+    private volatile int mPointStride = 1;
+
+    /**
+     * @param maxDistance     Points farther than this, in meters, are ignored.
+     * @param rowsPerMeter    Grid resolution along the y axis of the depth camera.
+     * @param columnsPerMeter Grid resolution along the x axis of the depth camera.
+     */
+    public ObstacleDetector(OccupancyGrid grid, GridDiffer gridDiffer, float maxDistance,
+                            float rowsPerMeter, float columnsPerMeter,
+                            HapticPatternEncoder encoder, HapticPlayer hapticPlayer) {
+        mGrid = grid;
+        mGridDiffer = gridDiffer;
+        mMaxDistance = maxDistance;
+        mRowsPerMeter = rowsPerMeter;
+        mColumnsPerMeter = columnsPerMeter;
+        mEncoder = encoder;
+        mHapticPlayer = hapticPlayer;
+    }
+
+    /**
+     * Rebuilds the grid from a depth cloud and warns about any obstacle in the walking path.
+     *
+     * @return true if an obstacle was detected.
+     */
+    public boolean update(FloatBuffer xyz, int pointCount) {
+        int pointStride = mPointStride;
+        mGrid.clear();
+        mGrid.addPoints(xyz, pointCount, mMaxDistance, mRowsPerMeter, mColumnsPerMeter,
+                pointStride);
+        mGridDiffer.update(mGrid.getCells());
+        if (!isCollision() || getAverageDepth(xyz, pointCount, pointStride) > mMaxDistance) {
+            return false;
+        }
+        // The free cell counts are kept up to date by the grid as points are added.
+        HapticPattern pattern = mEncoder.encode(mGrid.getLeftEmptyCount(),
+                mGrid.getRightEmptyCount(), mGrid.getNearestDistance());
+        if (pattern != null) {
+            mHapticPlayer.play(pattern);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the lower part of the grid is blocked, ignoring isolated cells.
+     */
+    public boolean isCollision() {
+        int[][] cells = mGrid.getCells();
+        int pairs = 0;
+        for (int row = mGrid.getHeight() - 1; row >= COLLISION_TOP_ROW; row--) {
+            int[] rowCells = cells[row];
+            for (int column = COLLISION_SIDE_MARGIN;
+                 column < mGrid.getWidth() - COLLISION_SIDE_MARGIN; column++) {
+                if (rowCells[column] == 1 && rowCells[column + 1] == 1) {
+                    pairs++;
+                }
+            }
+        }
+        return pairs >= COLLISION_MIN_PAIRS;
+    }
+
+    public OccupancyGrid getGrid() {
+        return mGrid;
+    }
+
+    /**
+     * Only bins every <code>pointStride</code>th point of the following clouds, trading detail
+     * for time when the device can't keep up. Can be called from any thread.
+     */
+    public void setPointStride(int pointStride) {
+        mPointStride = Math.max(1, pointStride);
+    }
+
+    private static float getAverageDepth(FloatBuffer xyz, int pointCount, int pointStride) {
+        if (pointCount == 0) {
+            return 0;
+        }
+        float totalZ = 0;
+        int count = 0;
+        for (int i = 2; i < pointCount * 3; i += pointStride * 3) {
+            totalZ += xyz.get(i);
+            count++;
+        }
+        return totalZ / count;
+    }
+}
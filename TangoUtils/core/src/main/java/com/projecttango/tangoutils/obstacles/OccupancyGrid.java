@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.obstacles;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Occupancy grid of the space in front of the device, built from the depth point cloud.
+ *
+ * Besides the occupancy of each cell, the grid keeps the distance to the nearest point in each
+ * occupied cell and maintains summary counts (free cells in the left and right halves, occupied
+ * cells, nearest obstacle) incrementally as cells are marked, so consumers never need to rescan
+ * the whole grid.
+ */
+public class OccupancyGrid {
+    // Half size of the window around the depth camera axis binned into the grid, in meters.
+    public static final float WINDOW_HALF_SIZE = 1f;
+
+    private final int mWidth;
+    private final int mHeight;
+    // Occupancy of each cell indexed by [row][column], 1 being occupied.
+    private final int[][] mCells;
+    // Distance to the nearest point in each occupied cell, in meters.
+    private final float[][] mDistances;
+
+    private int mLeftEmptyCount;
+    private int mRightEmptyCount;
+    private float mNearestDistance;
+
+    public OccupancyGrid(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mCells = new int[height][width];
+        mDistances = new float[height][width];
+        clear();
+    }
+
+    /**
+     * Marks every cell as free.
+     */
+    public void clear() {
+        for (int row = 0; row < mHeight; row++) {
+            for (int column = 0; column < mWidth; column++) {
+                mCells[row][column] = 0;
+            }
+        }
+        mLeftEmptyCount = (mWidth / 2) * mHeight;
+        mRightEmptyCount = (mWidth - mWidth / 2) * mHeight;
+        mNearestDistance = Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Marks a cell as occupied by a point at the given distance.
+     */
+    public void mark(int row, int column, float distance) {
+        if (mCells[row][column] == 0) {
+            mCells[row][column] = 1;
+            mDistances[row][column] = distance;
+            if (column < mWidth / 2) {
+                mLeftEmptyCount--;
+            } else {
+                mRightEmptyCount--;
+            }
+        } else if (distance < mDistances[row][column]) {
+            mDistances[row][column] = distance;
+        }
+        if (distance < mNearestDistance) {
+            mNearestDistance = distance;
+        }
+    }
+
+    /**
+     * Marks the cells of the points of a depth cloud within the binned window and closer than
+     * maxDistance. Rows follow the y axis and columns the x axis of the depth camera.
+     *
+     * @param rowsPerMeter    Number of rows per meter along y.
+     * @param columnsPerMeter Number of columns per meter along x.
+     * @return the number of points marked.
+     */
+    public int addPoints(FloatBuffer xyz, int pointCount, float maxDistance, float rowsPerMeter,
+                         float columnsPerMeter) {
+        return addPoints(xyz, pointCount, maxDistance, rowsPerMeter, columnsPerMeter, 1);
+    }
+
+    /**
+     * Same as <code>addPoints</code>, only considering every <code>pointStride</code>th point of
+     * the cloud to save time on dense clouds.
+     */
+    public int addPoints(FloatBuffer xyz, int pointCount, float maxDistance, float rowsPerMeter,
+                         float columnsPerMeter, int pointStride) {
+        int marked = 0;
+        for (int i = 0; i < pointCount * 3; i += pointStride * 3) {
+            float x = xyz.get(i);
+            float y = xyz.get(i + 1);
+            if (x >= -WINDOW_HALF_SIZE && x < WINDOW_HALF_SIZE
+                    && y >= -WINDOW_HALF_SIZE && y < WINDOW_HALF_SIZE) {
+                float z = xyz.get(i + 2);
+                float distance = (float) Math.sqrt(x * x + y * y + z * z);
+                if (distance < maxDistance) {
+                    mark((int) ((y + WINDOW_HALF_SIZE) * rowsPerMeter),
+                            (int) ((x + WINDOW_HALF_SIZE) * columnsPerMeter), distance);
+                    marked++;
+                }
+            }
+        }
+        return marked;
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return mCells[row][column] != 0;
+    }
+
+    /**
+     * Gets the distance to the nearest point of an occupied cell, in meters.
+     */
+    public float getDistance(int row, int column) {
+        return mDistances[row][column];
+    }
+
+    /**
+     * Gets the cells indexed by [row][column], 1 being occupied. This is the live array and must
+     * not be modified.
+     */
+    public int[][] getCells() {
+        return mCells;
+    }
+
+    public int getLeftEmptyCount() {
+        return mLeftEmptyCount;
+    }
+
+    public int getRightEmptyCount() {
+        return mRightEmptyCount;
+    }
+
+    public int getOccupiedCount() {
+        return mWidth * mHeight - mLeftEmptyCount - mRightEmptyCount;
+    }
+
+    /**
+     * Gets the distance to the nearest marked point, or infinity if the grid is empty.
+     */
+    public float getNearestDistance() {
+        return mNearestDistance;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Pipeline stage removing the points without a valid depth and, when the device can't keep up,
+ * all but every <code>pointStride</code>th point. Points are compacted in place, so the following
+ * stages only see the kept ones.
+ */
+public class CloudFilter implements DepthPipeline.Stage {
+    private volatile int mPointStride = 1;
+
+    /**
+     * Only keeps every <code>pointStride</code>th point of the following clouds. Can be called
+     * from any thread.
+     */
+    public void setPointStride(int pointStride) {
+        mPointStride = Math.max(1, pointStride);
+    }
+
+    public int getPointStride() {
+        return mPointStride;
+    }
+
+    /**
+     * Filters the cloud in place.
+     *
+     * @return true, the frame is always passed on.
+     */
+    @Override
+    public boolean process(CloudFrame frame) {
+        FloatBuffer points = frame.getPoints();
+        int pointStride = mPointStride;
+        int end = frame.getPointCount() * 3;
+        int kept = 0;
+        for (int i = 0; i < end; i += pointStride * 3) {
+            float z = points.get(i + 2);
+            // Also rejects NaN.
+            if (!(z > 0) || Float.isInfinite(z)) {
+                continue;
+            }
+            if (kept * 3 != i) {
+                points.put(kept * 3, points.get(i));
+                points.put(kept * 3 + 1, points.get(i + 1));
+                points.put(kept * 3 + 2, z);
+            }
+            kept++;
+        }
+        frame.setPointCount(kept);
+        return true;
+    }
+}
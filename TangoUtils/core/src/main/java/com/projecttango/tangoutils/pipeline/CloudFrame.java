@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Depth cloud travelling through a <code>DepthPipeline</code>. Frames are preallocated and
+ * recycled by the pipeline; their point buffer only grows when a larger cloud arrives.
+ */
+public class CloudFrame {
+    private FloatBuffer mPoints;
+    private int mPointCount;
+    private double mTimestamp;
+    private long mArrivalNanos;
+
+    CloudFrame(int initialPoints) {
+        mPoints = allocatePoints(initialPoints * 3);
+    }
+
+    /**
+     * Copies a cloud into the frame, leaving the position and limit of xyz unchanged.
+     */
+    void set(double timestamp, FloatBuffer xyz, int pointCount, long arrivalNanos) {
+        if (mPoints.capacity() < pointCount * 3) {
+            mPoints = allocatePoints(pointCount * 3);
+        }
+        int position = xyz.position();
+        int limit = xyz.limit();
+        xyz.limit(pointCount * 3).position(0);
+        mPoints.clear();
+        mPoints.put(xyz);
+        mPoints.rewind();
+        xyz.limit(limit).position(position);
+
+        mTimestamp = timestamp;
+        mPointCount = pointCount;
+        mArrivalNanos = arrivalNanos;
+    }
+
+    /**
+     * Gets the x, y, z coordinates of the points, to be read with absolute gets. Stages may
+     * rewrite them in place, e.g. to filter points out.
+     */
+    public FloatBuffer getPoints() {
+        return mPoints;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    /**
+     * Changes the number of points after they were rewritten in place. Can only shrink the cloud.
+     */
+    public void setPointCount(int pointCount) {
+        mPointCount = Math.min(pointCount, mPointCount);
+    }
+
+    /**
+     * Gets the Tango timestamp of the cloud, in seconds.
+     */
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Gets the <code>System.nanoTime()</code> at which the cloud entered the pipeline.
+     */
+    public long getArrivalNanos() {
+        return mArrivalNanos;
+    }
+
+    private static FloatBuffer allocatePoints(int floatCount) {
+        return ByteBuffer.allocateDirect(floatCount * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
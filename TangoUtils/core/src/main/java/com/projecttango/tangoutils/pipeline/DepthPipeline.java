@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chain of depth cloud processing stages, each running in its own thread, with bounded drop
+ * oldest handoffs between them.
+ *
+ * <code>offer</code> (the ingest stage, typically called from the Tango depth callback) copies the
+ * cloud into a recycled <code>CloudFrame</code> and queues it for the first stage. Each stage
+ * takes the oldest frame of its queue, processes it and queues it for the next stage. When a
+ * queue is full its oldest frame is evicted, recycled and counted as dropped by that stage, so
+ * under load the freshest clouds win and no stage falls behind by more than its queue capacity.
+ * Enough frames are preallocated for every queue and stage to be full at once, so the pipeline
+ * doesn't allocate unless a cloud larger than any before arrives.
+ *
+ * Stages are added before <code>start</code>. Stages that need to block or to keep the data, such
+ * as recording or rendering, should copy the frame and hand the copy over to their own thread.
+ */
+public class DepthPipeline {
+    /**
+     * Processing of a stage. Called from the stage thread.
+     */
+    public interface Stage {
+        /**
+         * @return true to pass the frame on to the next stage, false to drop it, e.g. when it
+         * isn't needed yet.
+         */
+        boolean process(CloudFrame frame);
+    }
+
+    private final int mInitialPoints;
+    private final List<String> mNames = new ArrayList<String>();
+    private final List<Stage> mStages = new ArrayList<Stage>();
+    private final List<DropOldestQueue<CloudFrame>> mQueues =
+            new ArrayList<DropOldestQueue<CloudFrame>>();
+    private volatile AtomicLongArray mProcessedCounts;
+    private final AtomicLong mIngestDroppedCount = new AtomicLong();
+
+    // Recycled frames. Guarded by itself.
+    private CloudFrame[] mFreeFrames;
+    private int mFreeCount = 0;
+
+    private Thread[] mThreads;
+    private volatile boolean mRunning = false;
+    private volatile RuntimeException mError;
+
+    /**
+     * @param initialPoints Number of points preallocated in each frame. Frames grow as needed.
+     */
+    public DepthPipeline(int initialPoints) {
+        mInitialPoints = initialPoints;
+    }
+
+    /**
+     * Appends a stage to the pipeline.
+     *
+     * @param queueCapacity Number of frames that can wait for this stage, usually 1 to only ever
+     *                      process the latest cloud.
+     * @return the index of the stage.
+     */
+    public synchronized int addStage(String name, int queueCapacity, Stage stage) {
+        if (mThreads != null) {
+            throw new IllegalStateException("Stages must be added before the pipeline starts");
+        }
+        mNames.add(name);
+        mStages.add(stage);
+        mQueues.add(new DropOldestQueue<CloudFrame>(queueCapacity));
+        return mStages.size() - 1;
+    }
+
+    /**
+     * Starts the stage threads. Calling this on a running pipeline has no effect.
+     */
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        int stageCount = mStages.size();
+        if (mFreeFrames == null) {
+            // One frame being ingested, plus a full queue and a frame in process for each stage.
+            int frameCount = 1;
+            for (DropOldestQueue<CloudFrame> queue : mQueues) {
+                frameCount += queue.getCapacity() + 1;
+            }
+            mFreeFrames = new CloudFrame[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                mFreeFrames[i] = new CloudFrame(mInitialPoints);
+            }
+            mFreeCount = frameCount;
+            mProcessedCounts = new AtomicLongArray(stageCount);
+        }
+
+        mError = null;
+        mRunning = true;
+        mThreads = new Thread[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            final int stage = i;
+            mThreads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runStage(stage);
+                }
+            }, DepthPipeline.class.getSimpleName() + "-" + mNames.get(i));
+            mThreads[i].start();
+        }
+    }
+
+    /**
+     * Stops the stage threads, waiting for the frames in process, and recycles the queued frames.
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        for (Thread thread : mThreads) {
+            thread.interrupt();
+        }
+        for (Thread thread : mThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (DropOldestQueue<CloudFrame> queue : mQueues) {
+            CloudFrame frame;
+            while ((frame = queue.poll()) != null) {
+                release(frame);
+            }
+        }
+    }
+
+    /**
+     * Copies a cloud into the pipeline, evicting the oldest cloud waiting for the first stage if
+     * needed. Never blocks.
+     *
+     * @return false if the pipeline isn't running or has no stage and the cloud was dropped.
+     */
+    public boolean offer(double timestamp, FloatBuffer xyz, int pointCount) {
+        if (!mRunning || mQueues.isEmpty()) {
+            return false;
+        }
+        CloudFrame frame = acquire();
+        if (frame == null) {
+            // The pool has room for every queue and stage to be full, this shouldn't happen.
+            mIngestDroppedCount.incrementAndGet();
+            return false;
+        }
+        frame.set(timestamp, xyz, pointCount, System.nanoTime());
+        CloudFrame evicted = mQueues.get(0).offer(frame);
+        if (evicted != null) {
+            release(evicted);
+        }
+        return true;
+    }
+
+    private void runStage(int stage) {
+        Stage processor = mStages.get(stage);
+        DropOldestQueue<CloudFrame> queue = mQueues.get(stage);
+        DropOldestQueue<CloudFrame> next = stage + 1 < mQueues.size() ? mQueues.get(stage + 1)
+                : null;
+        try {
+            while (mRunning) {
+                CloudFrame frame = queue.take();
+                boolean forward = false;
+                try {
+                    forward = processor.process(frame);
+                } catch (RuntimeException e) {
+                    // Keep the stage running, the next cloud may well be fine.
+                    mError = e;
+                }
+                mProcessedCounts.incrementAndGet(stage);
+                if (forward && next != null) {
+                    CloudFrame evicted = next.offer(frame);
+                    if (evicted != null) {
+                        release(evicted);
+                    }
+                } else {
+                    release(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    private CloudFrame acquire() {
+        synchronized (mFreeFrames) {
+            return mFreeCount == 0 ? null : mFreeFrames[--mFreeCount];
+        }
+    }
+
+    private void release(CloudFrame frame) {
+        synchronized (mFreeFrames) {
+            mFreeFrames[mFreeCount++] = frame;
+        }
+    }
+
+    public synchronized int getStageCount() {
+        return mStages.size();
+    }
+
+    public synchronized String getStageName(int stage) {
+        return mNames.get(stage);
+    }
+
+    /**
+     * Gets the number of frames a stage has processed, whether it passed them on or not.
+     */
+    public long getProcessedCount(int stage) {
+        AtomicLongArray processedCounts = mProcessedCounts;
+        return processedCounts == null ? 0 : processedCounts.get(stage);
+    }
+
+    /**
+     * Gets the number of frames evicted from the queue of a stage before it could process them.
+     */
+    public long getDroppedCount(int stage) {
+        return mQueues.get(stage).getDroppedCount();
+    }
+
+    /**
+     * Gets the number of clouds dropped by <code>offer</code> because no frame was free.
+     */
+    public long getIngestDroppedCount() {
+        return mIngestDroppedCount.get();
+    }
+
+    /**
+     * Gets the last exception thrown by a stage, or null if every frame was processed
+     * successfully since the pipeline started.
+     */
+    public RuntimeException getError() {
+        return mError;
+    }
+}
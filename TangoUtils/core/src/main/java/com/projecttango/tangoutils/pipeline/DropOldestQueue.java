@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+/**
+ * Bounded queue that makes room for new items by evicting the oldest one, so that under load a
+ * consumer always gets the freshest data and never builds up a backlog.
+ *
+ * Evicted items are handed back to the producer, e.g. to be recycled, and counted as dropped.
+ * The queue is backed by a fixed array and doesn't allocate.
+ */
+public class DropOldestQueue<T> {
+    private final Object[] mItems;
+    // Guarded by this.
+    private int mHead = 0;
+    private int mSize = 0;
+    private long mDroppedCount = 0;
+
+    public DropOldestQueue(int capacity) {
+        mItems = new Object[capacity];
+    }
+
+    /**
+     * Adds an item, evicting the oldest one if the queue is full.
+     *
+     * @return the evicted item, or null if there was room.
+     */
+    public synchronized T offer(T item) {
+        T evicted = null;
+        if (mSize == mItems.length) {
+            evicted = removeFirst();
+            mDroppedCount++;
+        }
+        mItems[(mHead + mSize) % mItems.length] = item;
+        mSize++;
+        notifyAll();
+        return evicted;
+    }
+
+    /**
+     * Removes the oldest item, or returns null if the queue is empty.
+     */
+    public synchronized T poll() {
+        return mSize == 0 ? null : removeFirst();
+    }
+
+    /**
+     * Removes the oldest item, waiting for one if the queue is empty.
+     */
+    public synchronized T take() throws InterruptedException {
+        while (mSize == 0) {
+            wait();
+        }
+        return removeFirst();
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public int getCapacity() {
+        return mItems.length;
+    }
+
+    /**
+     * Gets the number of items evicted to make room for newer ones.
+     */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeFirst() {
+        T item = (T) mItems[mHead];
+        mItems[mHead] = null;
+        mHead = (mHead + 1) % mItems.length;
+        mSize--;
+        return item;
+    }
+}
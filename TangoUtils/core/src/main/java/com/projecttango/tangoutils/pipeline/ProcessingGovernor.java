@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scales the work of the depth to feedback pipeline to the CPU actually available, e.g. once the
+ * device starts throttling during a long session.
+ *
+ * Every stage reports how long each of its runs took and has a time budget, such as a frame
+ * deadline. Each stage also has a degradation level, from 0 (full quality) up to its maximum
+ * level, which the application maps to its own knobs (point stride, processing period, number of
+ * notes, rendered frames...). The governor is evaluated periodically:
+ *
+ *  - When more than a tenth of the runs of any stage missed their budget, the stage with the
+ *    lowest priority that can still be degraded goes down one level, whichever stage missed its
+ *    budget, since all of them compete for the same CPU. Obstacle warnings should have the
+ *    highest priority, so they are the last to degrade.
+ *  - After a few evaluations where every stage ran well within its budget, the stage with the
+ *    highest priority that is degraded goes back up one level.
+ *
+ * Levels change by one step per evaluation, so the pipeline degrades gradually instead of
+ * falling behind, without oscillating. Times can be recorded from any thread without locks or
+ * allocation.
+ */
+public class ProcessingGovernor {
+    // A stage misses its budget if more than this fraction of its runs exceed it.
+    private static final double MISS_RATIO = 0.1;
+    // A stage has headroom if its mean run time is below this fraction of its budget.
+    private static final double HEADROOM_RATIO = 0.5;
+    // Consecutive evaluations with headroom in every stage before a level is restored.
+    private static final int RELAX_EVALUATIONS = 3;
+
+    private final int mStageCount;
+    private final long mEvaluationPeriodNanos;
+    private final int[] mPriorities;
+    private final long[] mBudgetNanos;
+    private final int[] mMaxLevels;
+    private final AtomicIntegerArray mLevels;
+
+    // Runs recorded since the last evaluation.
+    private final AtomicLongArray mTotalNanos;
+    private final AtomicLongArray mRunCounts;
+    private final AtomicLongArray mMissCounts;
+
+    // Guarded by this.
+    private long mLastEvaluationNanos;
+    private boolean mHasEvaluated = false;
+    private int mRelaxedEvaluations = 0;
+    private final long[] mMeanNanos;
+
+    /**
+     * Creates a governor whose stages all have the same priority, no budget and no level to
+     * degrade to, until they are configured.
+     *
+     * @param evaluationPeriodMs Minimum time between two level changes.
+     */
+    public ProcessingGovernor(int stageCount, long evaluationPeriodMs) {
+        mStageCount = stageCount;
+        mEvaluationPeriodNanos = TimeUnit.MILLISECONDS.toNanos(evaluationPeriodMs);
+        mPriorities = new int[stageCount];
+        mBudgetNanos = new long[stageCount];
+        mMaxLevels = new int[stageCount];
+        mLevels = new AtomicIntegerArray(stageCount);
+        mTotalNanos = new AtomicLongArray(stageCount);
+        mRunCounts = new AtomicLongArray(stageCount);
+        mMissCounts = new AtomicLongArray(stageCount);
+        mMeanNanos = new long[stageCount];
+        for (int stage = 0; stage < stageCount; stage++) {
+            mBudgetNanos[stage] = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Configures a stage. Must be called before the governor is used.
+     *
+     * @param priority Stages with a lower priority are degraded first and restored last.
+     * @param budgetMs Time a run of the stage should stay under, in milliseconds.
+     * @param maxLevel Highest degradation level of the stage.
+     */
+    public synchronized void configureStage(int stage, int priority, double budgetMs,
+                                            int maxLevel) {
+        mPriorities[stage] = priority;
+        mBudgetNanos[stage] = (long) (budgetMs * 1e6);
+        mMaxLevels[stage] = maxLevel;
+    }
+
+    /**
+     * Records the time elapsed since the given <code>System.nanoTime()</code> value as a run of a
+     * stage.
+     */
+    public void recordSince(int stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a run of a stage, or for deadlines, the time between the start of the work and its
+     * result.
+     */
+    public void record(int stage, long nanos) {
+        mTotalNanos.getAndAdd(stage, nanos);
+        mRunCounts.incrementAndGet(stage);
+        if (nanos > mBudgetNanos[stage]) {
+            mMissCounts.incrementAndGet(stage);
+        }
+    }
+
+    /**
+     * Degrades or restores one stage if the evaluation period has elapsed and the recorded runs
+     * call for it. Meant to be called regularly from a single thread, e.g. the processing thread.
+     *
+     * @return true if a level changed.
+     */
+    public synchronized boolean evaluate(long nowNanos) {
+        if (mHasEvaluated && nowNanos - mLastEvaluationNanos < mEvaluationPeriodNanos) {
+            return false;
+        }
+        mHasEvaluated = true;
+        mLastEvaluationNanos = nowNanos;
+
+        boolean missed = false;
+        boolean headroom = true;
+        for (int stage = 0; stage < mStageCount; stage++) {
+            long runs = mRunCounts.getAndSet(stage, 0);
+            long total = mTotalNanos.getAndSet(stage, 0);
+            long misses = mMissCounts.getAndSet(stage, 0);
+            if (runs == 0) {
+                continue;
+            }
+            mMeanNanos[stage] = total / runs;
+            if (misses > runs * MISS_RATIO) {
+                missed = true;
+            }
+            if (misses > 0 || mMeanNanos[stage] > mBudgetNanos[stage] * HEADROOM_RATIO) {
+                headroom = false;
+            }
+        }
+
+        if (missed) {
+            mRelaxedEvaluations = 0;
+            return degrade();
+        }
+        if (headroom && ++mRelaxedEvaluations >= RELAX_EVALUATIONS) {
+            mRelaxedEvaluations = 0;
+            return restore();
+        }
+        if (!headroom) {
+            mRelaxedEvaluations = 0;
+        }
+        return false;
+    }
+
+    private boolean degrade() {
+        int selected = -1;
+        for (int stage = 0; stage < mStageCount; stage++) {
+            if (mLevels.get(stage) < mMaxLevels[stage]
+                    && (selected < 0 || mPriorities[stage] < mPriorities[selected])) {
+                selected = stage;
+            }
+        }
+        if (selected < 0) {
+            return false;
+        }
+        mLevels.incrementAndGet(selected);
+        return true;
+    }
+
+    private boolean restore() {
+        int selected = -1;
+        for (int stage = 0; stage < mStageCount; stage++) {
+            if (mLevels.get(stage) > 0
+                    && (selected < 0 || mPriorities[stage] > mPriorities[selected])) {
+                selected = stage;
+            }
+        }
+        if (selected < 0) {
+            return false;
+        }
+        mLevels.decrementAndGet(selected);
+        return true;
+    }
+
+    /**
+     * Gets the current degradation level of a stage, 0 being full quality. Can be called from any
+     * thread.
+     */
+    public int getLevel(int stage) {
+        return mLevels.get(stage);
+    }
+
+    /**
+     * Gets the mean run time of a stage over the last evaluation period in which it ran.
+     */
+    public synchronized long getMeanNanos(int stage) {
+        return mMeanNanos[stage];
+    }
+
+    /**
+     * Restores every stage to full quality and forgets the recorded runs.
+     */
+    public synchronized void reset() {
+        for (int stage = 0; stage < mStageCount; stage++) {
+            mLevels.set(stage, 0);
+            mRunCounts.set(stage, 0);
+            mTotalNanos.set(stage, 0);
+            mMissCounts.set(stage, 0);
+            mMeanNanos[stage] = 0;
+        }
+        mHasEvaluated = false;
+        mRelaxedEvaluations = 0;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import com.projecttango.tangoutils.depth.DepthImage;
+import com.projecttango.tangoutils.depth.DepthImageProjector;
+import com.projecttango.tangoutils.depth.NormalEstimator;
+import com.projecttango.tangoutils.depth.SurfaceClassifier;
+
+/**
+ * Pipeline stage removing the walkable floor from the clouds, so the following stages only see
+ * what is in the way.
+ *
+ * Each cloud is projected into a depth image, whose normals are estimated and classified, and
+ * the points falling into floor pixels are compacted out in place. Until the camera intrinsics
+ * are known the clouds are passed on unchanged. The images and arrays are reallocated only when
+ * the intrinsics change.
+ *
+ * <code>process</code> and <code>setUpDirection</code> must be called from the pipeline thread
+ * of the stage.
+ */
+public class SurfaceFilter implements DepthPipeline.Stage {
+    private final NormalEstimator mNormalEstimator;
+    private final SurfaceClassifier mClassifier;
+    private final int mDownsampling;
+    private volatile DepthImageProjector mProjector;
+
+    // Only accessed by the pipeline thread.
+    private DepthImageProjector mImageProjector;
+    private DepthImage mImage;
+    private float[] mNormals;
+    private byte[] mLabels;
+    private int mRemovedCount = 0;
+
+    /**
+     * @param downsampling Number of camera pixels along each side of a depth image pixel.
+     */
+    public SurfaceFilter(NormalEstimator normalEstimator, SurfaceClassifier classifier,
+                         int downsampling) {
+        mNormalEstimator = normalEstimator;
+        mClassifier = classifier;
+        mDownsampling = downsampling;
+    }
+
+    /**
+     * Sets the intrinsics of the camera the clouds are projected with, in pixels. Can be called
+     * from any thread.
+     */
+    public void setIntrinsics(double fx, double fy, double cx, double cy, int width, int height) {
+        mProjector = new DepthImageProjector(fx, fy, cx, cy, width, height, mDownsampling);
+    }
+
+    /**
+     * Sets the up direction in the camera frame of the following clouds.
+     */
+    public void setUpDirection(float x, float y, float z) {
+        mClassifier.setUpDirection(x, y, z);
+    }
+
+    /**
+     * Removes the floor points of the cloud in place.
+     *
+     * @return true, the frame is always passed on.
+     */
+    @Override
+    public boolean process(CloudFrame frame) {
+        DepthImageProjector projector = mProjector;
+        if (projector == null) {
+            return true;
+        }
+        if (projector != mImageProjector) {
+            mImageProjector = projector;
+            mImage = projector.createImage();
+            int pixelCount = projector.getWidth() * projector.getHeight();
+            mNormals = new float[pixelCount * 3];
+            mLabels = new byte[pixelCount];
+        }
+        int pointCount = frame.getPointCount();
+        projector.project(frame.getPoints(), pointCount, mImage);
+        mNormalEstimator.estimate(mImage, mNormals);
+        mClassifier.classify(mImage, mNormals, mLabels);
+        int kept = SurfaceClassifier.removeLabel(frame.getPoints(), pointCount, projector,
+                mLabels, SurfaceClassifier.LABEL_FLOOR);
+        mRemovedCount = pointCount - kept;
+        frame.setPointCount(kept);
+        return true;
+    }
+
+    /**
+     * Gets the labels of the last processed cloud, row by row over the depth image, or null if
+     * no cloud was classified yet. Only valid in the pipeline thread.
+     */
+    public byte[] getLabels() {
+        return mLabels;
+    }
+
+    /**
+     * Gets the number of pixels given a label in the last processed cloud. Only valid in the
+     * pipeline thread.
+     */
+    public int getLabelCount(byte label) {
+        return mClassifier.getLabelCount(label);
+    }
+
+    /**
+     * Gets the number of floor points removed from the last processed cloud. Only valid in the
+     * pipeline thread.
+     */
+    public int getRemovedCount() {
+        return mRemovedCount;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Compact lossy encoding of xyz point clouds.
+ *
+ * Points are quantized to 16-bit millimetre offsets from a per-cloud origin (the first point),
+ * then each coordinate is delta-encoded against the previous point in scan order. Neighbouring
+ * points of a depth scan are close to each other, so the zigzag varint encoded deltas mostly
+ * take one or two bytes instead of four, shrinking a cloud about 4 times. Points further than
+ * about 32 m from the origin are clamped.
+ *
+ * Both directions work directly on <code>ByteBuffer</code>s and <code>FloatBuffer</code>s with
+ * relative reads and writes, so a cloud can be decoded straight from a mapped recording into a
+ * direct buffer without intermediate arrays.
+ */
+public final class PointCloudCodec {
+    // Size of a quantization step, in meters.
+    public static final float RESOLUTION = 0.001f;
+    private static final float INVERSE_RESOLUTION = 1 / RESOLUTION;
+
+    private static final int ORIGIN_SIZE = 3 * 4;
+    // A 16-bit delta needs at most 17 bits once zigzag encoded, i.e. 3 varint bytes.
+    private static final int MAX_VARINT_SIZE = 3;
+
+    private PointCloudCodec() {
+    }
+
+    /**
+     * Gets the maximum number of bytes <code>encode</code> can write for the given number of
+     * points.
+     */
+    public static int getMaxEncodedSize(int pointCount) {
+        return ORIGIN_SIZE + pointCount * 3 * MAX_VARINT_SIZE;
+    }
+
+    /**
+     * Encodes the first <code>pointCount</code> points of <code>xyz</code> at the position of
+     * <code>out</code>, which must have room for <code>getMaxEncodedSize(pointCount)</code> bytes.
+     * The position of <code>xyz</code> is not modified.
+     *
+     * @return the number of bytes written.
+     */
+    public static int encode(FloatBuffer xyz, int pointCount, ByteBuffer out) {
+        int start = out.position();
+        if (pointCount == 0) {
+            return 0;
+        }
+        float originX = xyz.get(0);
+        float originY = xyz.get(1);
+        float originZ = xyz.get(2);
+        out.putFloat(originX);
+        out.putFloat(originY);
+        out.putFloat(originZ);
+
+        int previousX = 0;
+        int previousY = 0;
+        int previousZ = 0;
+        for (int i = 0; i < pointCount * 3; i += 3) {
+            int x = quantize(xyz.get(i) - originX);
+            int y = quantize(xyz.get(i + 1) - originY);
+            int z = quantize(xyz.get(i + 2) - originZ);
+            putDelta(out, x - previousX);
+            putDelta(out, y - previousY);
+            putDelta(out, z - previousZ);
+            previousX = x;
+            previousY = y;
+            previousZ = z;
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Decodes <code>pointCount</code> points from the position of <code>in</code> and puts them
+     * at the position of <code>out</code>. Both buffers are advanced past the decoded data.
+     */
+    public static void decode(ByteBuffer in, int pointCount, FloatBuffer out) {
+        if (pointCount == 0) {
+            return;
+        }
+        float originX = in.getFloat();
+        float originY = in.getFloat();
+        float originZ = in.getFloat();
+
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        for (int i = 0; i < pointCount; i++) {
+            x += getDelta(in);
+            y += getDelta(in);
+            z += getDelta(in);
+            out.put(originX + x * RESOLUTION);
+            out.put(originY + y * RESOLUTION);
+            out.put(originZ + z * RESOLUTION);
+        }
+    }
+
+    private static int quantize(float offset) {
+        int value = Math.round(offset * INVERSE_RESOLUTION);
+        return Math.max(Short.MIN_VALUE, Math.min(value, Short.MAX_VALUE));
+    }
+
+    private static void putDelta(ByteBuffer out, int delta) {
+        // Zigzag encoding maps small negative deltas to small positive values.
+        int value = (delta << 1) ^ (delta >> 31);
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getDelta(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
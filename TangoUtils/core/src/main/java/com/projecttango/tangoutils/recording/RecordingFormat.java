@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of Tango session recordings, shared by <code>RecordingWriter</code> and
+ * <code>RecordingReader</code>.
+ *
+ * A recording starts with a file header followed by a sequence of records, all little endian:
+ * <pre>
+ * header:  int magic, int version, long reserved
+ * record:  int type, int payload size in bytes, double timestamp, payload
+ * pose:    int base frame, int target frame, int status code, int unused,
+ *          3 doubles translation, 4 doubles rotation (x, y, z, w)
+ * xyz:     int point count, int unused, 3 floats per point
+ * compressed xyz: int point count, int unused, points encoded with <code>PointCloudCodec</code>
+ * </pre>
+ * Every record carries its payload size, so readers can skip record types they don't know.
+ */
+public final class RecordingFormat {
+    // "TREC" when read as little endian bytes.
+    public static final int MAGIC = 0x43455254;
+    public static final int VERSION = 1;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int FILE_HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 16;
+
+    public static final int RECORD_POSE = 1;
+    public static final int RECORD_XYZ = 2;
+    public static final int RECORD_XYZ_COMPRESSED = 3;
+
+    public static final int POSE_PAYLOAD_SIZE = 16 + 7 * 8;
+    public static final int XYZ_HEADER_SIZE = 8;
+
+    private RecordingFormat() {
+    }
+
+    /**
+     * Gets the payload size of an xyz record holding the given number of points.
+     */
+    public static int getXyzPayloadSize(int pointCount) {
+        return XYZ_HEADER_SIZE + pointCount * 3 * 4;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a recording file written by <code>RecordingWriter</code>, in order.
+ *
+ * The whole file is memory-mapped read only. <code>next</code> moves to the following record and
+ * the getters read the fields of the current one straight from the mapping, so iterating over a
+ * recording doesn't allocate. A record cut short at the end of the file (e.g. when the app was
+ * killed while recording) is treated as the end of the recording.
+ *
+ * This class is not thread safe.
+ */
+public class RecordingReader {
+    public static final int END_OF_RECORDING = -1;
+
+    private final MappedByteBuffer mBuffer;
+
+    // Current record.
+    private int mType = END_OF_RECORDING;
+    private int mPayloadOffset;
+    private int mPayloadSize;
+    private double mTimestamp;
+
+    public RecordingReader(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Recording too large: " + file);
+            }
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the file is closed.
+            randomAccessFile.close();
+        }
+        mBuffer.order(RecordingFormat.BYTE_ORDER);
+        if (mBuffer.remaining() < RecordingFormat.FILE_HEADER_SIZE
+                || mBuffer.getInt(0) != RecordingFormat.MAGIC) {
+            throw new IOException("Not a recording: " + file);
+        }
+        int version = mBuffer.getInt(4);
+        if (version != RecordingFormat.VERSION) {
+            throw new IOException("Unsupported recording version " + version + ": " + file);
+        }
+        rewind();
+    }
+
+    /**
+     * Goes back to before the first record.
+     */
+    public void rewind() {
+        mBuffer.position(RecordingFormat.FILE_HEADER_SIZE);
+        mType = END_OF_RECORDING;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return the type of the record, one of the <code>RecordingFormat.RECORD_*</code> constants
+     * or an unknown type from a newer writer, or <code>END_OF_RECORDING</code>.
+     */
+    public int next() {
+        if (mType != END_OF_RECORDING) {
+            mBuffer.position(mPayloadOffset + mPayloadSize);
+        }
+        if (mBuffer.remaining() < RecordingFormat.RECORD_HEADER_SIZE) {
+            return mType = END_OF_RECORDING;
+        }
+        int type = mBuffer.getInt();
+        int payloadSize = mBuffer.getInt();
+        double timestamp = mBuffer.getDouble();
+        if (payloadSize < 0 || payloadSize > mBuffer.remaining()) {
+            return mType = END_OF_RECORDING;
+        }
+        mPayloadOffset = mBuffer.position();
+        mPayloadSize = payloadSize;
+        mTimestamp = timestamp;
+        return mType = type;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * Gets the timestamp of the current record, in seconds.
+     */
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getPoseBaseFrame() {
+        return mBuffer.getInt(mPayloadOffset);
+    }
+
+    public int getPoseTargetFrame() {
+        return mBuffer.getInt(mPayloadOffset + 4);
+    }
+
+    public int getPoseStatusCode() {
+        return mBuffer.getInt(mPayloadOffset + 8);
+    }
+
+    /**
+     * Copies the translation and rotation of the current pose record.
+     *
+     * @param outTranslation Receives the x, y, z translation.
+     * @param outRotation    Receives the x, y, z, w rotation quaternion.
+     */
+    public void getPose(double[] outTranslation, double[] outRotation) {
+        int offset = mPayloadOffset + 16;
+        for (int i = 0; i < 3; i++, offset += 8) {
+            outTranslation[i] = mBuffer.getDouble(offset);
+        }
+        for (int i = 0; i < 4; i++, offset += 8) {
+            outRotation[i] = mBuffer.getDouble(offset);
+        }
+    }
+
+    /**
+     * Gets the number of points of the current xyz or compressed xyz record.
+     */
+    public int getPointCount() {
+        return mBuffer.getInt(mPayloadOffset);
+    }
+
+    /**
+     * Copies the points of the current xyz record, or decodes those of the current compressed
+     * xyz record, at the start of the given buffer, which must hold at least 3 floats per point.
+     * On return the buffer position is 0 and its limit is the end of the points.
+     */
+    public void getPoints(FloatBuffer out) {
+        int pointCount = getPointCount();
+        int position = mBuffer.position();
+        int limit = mBuffer.limit();
+        mBuffer.position(mPayloadOffset + RecordingFormat.XYZ_HEADER_SIZE);
+        out.clear();
+        if (mType == RecordingFormat.RECORD_XYZ_COMPRESSED) {
+            PointCloudCodec.decode(mBuffer, pointCount, out);
+        } else {
+            mBuffer.limit(mPayloadOffset + RecordingFormat.XYZ_HEADER_SIZE + pointCount * 3 * 4);
+            out.put(mBuffer.asFloatBuffer());
+        }
+        out.flip();
+        mBuffer.limit(limit).position(position);
+    }
+}
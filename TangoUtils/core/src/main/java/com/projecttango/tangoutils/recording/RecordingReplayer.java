@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recording back to a <code>Listener</code>, either at the recorded pace (optionally sped
+ * up) or as fast as possible.
+ *
+ * The listener gets the same data as the pose and xyz callbacks of
+ * <code>Tango.OnTangoUpdateListener</code>, as primitive values, so the code consuming them can
+ * run without a Tango device or even Android, e.g. to profile or regression test it on a
+ * workstation. Use <code>TangoUpdateReplayListener</code> to feed an existing
+ * <code>OnTangoUpdateListener</code> on a device.
+ *
+ * <code>replay</code> runs in the calling thread and returns when the recording is over or
+ * <code>stop</code> is called from another thread.
+ */
+public class RecordingReplayer {
+    /**
+     * Receives the recorded data, in the thread calling <code>replay</code>.
+     */
+    public interface Listener {
+        /**
+         * @param translation x, y, z translation.
+         * @param rotation    x, y, z, w rotation quaternion.
+         */
+        void onPoseAvailable(double timestamp, int baseFrame, int targetFrame, int statusCode,
+                             double[] translation, double[] rotation);
+
+        /**
+         * @param xyz Direct buffer with 3 floats per point. It is reused for the following
+         *            clouds, so copy it to keep the points after returning.
+         */
+        void onXyzIjAvailable(double timestamp, FloatBuffer xyz, int pointCount);
+    }
+
+    // Replay speed that dispatches the records without waiting between them.
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private final RecordingReader mReader;
+    private final Listener mListener;
+    private final double mSpeed;
+    private volatile boolean mStopped = false;
+
+    private final double[] mTranslation = new double[3];
+    private final double[] mRotation = new double[4];
+    private FloatBuffer mPoints = allocatePoints(0);
+
+    /**
+     * @param speed Replay speed relative to the recorded pace, e.g. 1 for real time or 4 for four
+     *              times faster, or <code>AS_FAST_AS_POSSIBLE</code>.
+     */
+    public RecordingReplayer(RecordingReader reader, Listener listener, double speed) {
+        mReader = reader;
+        mListener = listener;
+        mSpeed = speed;
+    }
+
+    /**
+     * Replays the recording from the start.
+     *
+     * @return the number of records dispatched to the listener.
+     */
+    public int replay() {
+        mStopped = false;
+        mReader.rewind();
+        int dispatched = 0;
+        long startNanos = System.nanoTime();
+        double firstTimestamp = Double.NaN;
+
+        int type;
+        while (!mStopped && (type = mReader.next()) != RecordingReader.END_OF_RECORDING) {
+            if (type != RecordingFormat.RECORD_POSE && type != RecordingFormat.RECORD_XYZ
+                    && type != RecordingFormat.RECORD_XYZ_COMPRESSED) {
+                continue;
+            }
+            double timestamp = mReader.getTimestamp();
+            if (mSpeed > 0) {
+                if (Double.isNaN(firstTimestamp)) {
+                    firstTimestamp = timestamp;
+                }
+                // Scheduled against the start of the replay so that the time spent in the
+                // listener doesn't add up over the records.
+                long deadline = startNanos
+                        + (long) ((timestamp - firstTimestamp) / mSpeed * 1e9);
+                long wait;
+                while (!mStopped && (wait = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                if (mStopped) {
+                    break;
+                }
+            }
+
+            if (type == RecordingFormat.RECORD_POSE) {
+                mReader.getPose(mTranslation, mRotation);
+                mListener.onPoseAvailable(timestamp, mReader.getPoseBaseFrame(),
+                        mReader.getPoseTargetFrame(), mReader.getPoseStatusCode(),
+                        mTranslation, mRotation);
+            } else {
+                int pointCount = mReader.getPointCount();
+                if (mPoints.capacity() < pointCount * 3) {
+                    mPoints = allocatePoints(pointCount * 3);
+                }
+                mReader.getPoints(mPoints);
+                mListener.onXyzIjAvailable(timestamp, mPoints, pointCount);
+            }
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    /**
+     * Makes <code>replay</code> return after the record being dispatched, if any.
+     */
+    public void stop() {
+        mStopped = true;
+    }
+
+    private static FloatBuffer allocatePoints(int floatCount) {
+        return ByteBuffer.allocateDirect(floatCount * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes poses and xyz point clouds to a recording file through a memory-mapped
+ * <code>FileChannel</code>.
+ *
+ * The file is mapped in regions of a fixed size that are replaced as they fill up, so records are
+ * written with plain memory copies and the kernel takes care of flushing them to storage. Point
+ * clouds are bulk-copied from the given <code>FloatBuffer</code> without any per-point work.
+ * <code>close</code> trims the file to the bytes actually written.
+ *
+ * This class is not thread safe.
+ */
+public class RecordingWriter {
+    public static final int DEFAULT_MAP_SIZE = 8 * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mMapSize;
+
+    private MappedByteBuffer mBuffer;
+    // File offset of the start of mBuffer.
+    private long mBufferOffset = 0;
+    private boolean mClosed = false;
+
+    public RecordingWriter(File file) throws IOException {
+        this(file, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Creates a new recording, replacing any existing file.
+     *
+     * @param mapSize Size in bytes of each mapped region of the file.
+     */
+    public RecordingWriter(File file, int mapSize) throws IOException {
+        mMapSize = mapSize;
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        ensureCapacity(RecordingFormat.FILE_HEADER_SIZE);
+        mBuffer.putInt(RecordingFormat.MAGIC);
+        mBuffer.putInt(RecordingFormat.VERSION);
+        mBuffer.putLong(0);
+    }
+
+    /**
+     * Appends a pose record.
+     *
+     * @param translation x, y, z translation.
+     * @param rotation    x, y, z, w rotation quaternion.
+     */
+    public void writePose(double timestamp, int baseFrame, int targetFrame, int statusCode,
+                          double[] translation, double[] rotation) throws IOException {
+        putRecordHeader(RecordingFormat.RECORD_POSE, RecordingFormat.POSE_PAYLOAD_SIZE,
+                timestamp);
+        mBuffer.putInt(baseFrame);
+        mBuffer.putInt(targetFrame);
+        mBuffer.putInt(statusCode);
+        mBuffer.putInt(0);
+        for (int i = 0; i < 3; i++) {
+            mBuffer.putDouble(translation[i]);
+        }
+        for (int i = 0; i < 4; i++) {
+            mBuffer.putDouble(rotation[i]);
+        }
+    }
+
+    /**
+     * Appends an xyz point cloud record with the first <code>pointCount</code> points of the
+     * buffer. The position and limit of the buffer are restored before returning.
+     */
+    public void writeXyz(double timestamp, FloatBuffer xyz, int pointCount) throws IOException {
+        putRecordHeader(RecordingFormat.RECORD_XYZ,
+                RecordingFormat.getXyzPayloadSize(pointCount), timestamp);
+        mBuffer.putInt(pointCount);
+        mBuffer.putInt(0);
+
+        int position = xyz.position();
+        int limit = xyz.limit();
+        xyz.limit(pointCount * 3).position(0);
+        FloatBuffer points = mBuffer.asFloatBuffer();
+        points.put(xyz);
+        xyz.limit(limit).position(position);
+        mBuffer.position(mBuffer.position() + pointCount * 3 * 4);
+    }
+
+    /**
+     * Appends a compressed xyz point cloud record with the first <code>pointCount</code> points of
+     * the buffer, encoded with <code>PointCloudCodec</code>. The buffer position is not modified.
+     */
+    public void writeCompressedXyz(double timestamp, FloatBuffer xyz, int pointCount)
+            throws IOException {
+        int maxPayloadSize = RecordingFormat.XYZ_HEADER_SIZE
+                + PointCloudCodec.getMaxEncodedSize(pointCount);
+        putRecordHeader(RecordingFormat.RECORD_XYZ_COMPRESSED, maxPayloadSize, timestamp);
+        int payloadSizeIndex = mBuffer.position() - 12;
+        mBuffer.putInt(pointCount);
+        mBuffer.putInt(0);
+        int encodedSize = PointCloudCodec.encode(xyz, pointCount, mBuffer);
+        // Replace the upper bound with the actual size.
+        mBuffer.putInt(payloadSizeIndex, RecordingFormat.XYZ_HEADER_SIZE + encodedSize);
+    }
+
+    /**
+     * Gets the size of the recording so far, in bytes.
+     */
+    public long getBytesWritten() {
+        return mBufferOffset + mBuffer.position();
+    }
+
+    /**
+     * Trims the file to the recorded data and closes it. Further writes fail.
+     */
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        long size = getBytesWritten();
+        mBuffer.force();
+        mBuffer = null;
+        try {
+            mChannel.truncate(size);
+        } finally {
+            mFile.close();
+        }
+    }
+
+    private void putRecordHeader(int type, int payloadSize, double timestamp)
+            throws IOException {
+        ensureCapacity(RecordingFormat.RECORD_HEADER_SIZE + payloadSize);
+        mBuffer.putInt(type);
+        mBuffer.putInt(payloadSize);
+        mBuffer.putDouble(timestamp);
+    }
+
+    /**
+     * Makes sure the next bytes fit in the current mapped region, mapping a new region starting
+     * at the current end of the recording if needed.
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (mClosed) {
+            throw new IOException("Recording is closed");
+        }
+        if (mBuffer != null && mBuffer.remaining() >= bytes) {
+            return;
+        }
+        long offset = mBuffer == null ? 0 : getBytesWritten();
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, offset, Math.max(bytes, mMapSize));
+        mBuffer.order(RecordingFormat.BYTE_ORDER);
+        mBufferOffset = offset;
+    }
+}
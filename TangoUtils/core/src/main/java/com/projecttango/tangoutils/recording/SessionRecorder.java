@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records a live session to a series of chunked recording files from a background thread.
+ *
+ * The Tango callbacks only bulk-copy the data into preallocated slots and hand them over to the
+ * writer thread through lock-free queues, so recording never blocks them. If the writer falls
+ * behind and every slot is taken, new data is dropped and counted instead. The writer thread
+ * applies the optional downsampling and compression, writes the records with a
+ * <code>RecordingWriter</code> in timestamp order and starts a new chunk file whenever the current
+ * one would exceed the size limit.
+ *
+ * <code>onXyzIjAvailable</code> and <code>onPoseAvailable</code> may be called from two different
+ * threads, but each of them from a single thread at a time.
+ */
+public class SessionRecorder implements RecordingReplayer.Listener {
+    private static final String TAG = SessionRecorder.class.getSimpleName();
+    public static final String FILE_EXTENSION = ".trec";
+
+    private static final int POSE_SLOTS = 64;
+    // How long the writer thread waits before checking for new data when it's idle.
+    private static final long IDLE_WAIT_NANOS = 5000000L;
+
+    private final File mDirectory;
+    private final String mName;
+    private final long mMaxChunkBytes;
+    private final int mPointStride;
+    private final boolean mCompress;
+
+    // Cloud slots, filled by the cloud producer and written by the writer thread.
+    private final SpscSlots mClouds;
+    private final FloatBuffer[] mCloudPoints;
+    private final double[] mCloudTimestamps;
+    private final int[] mCloudPointCounts;
+    private final int[] mCloudSessions;
+
+    // Pose slots, filled by the pose producer and written by the writer thread.
+    private final SpscSlots mPoses = new SpscSlots(POSE_SLOTS);
+    private final double[] mPoseTimestamps = new double[POSE_SLOTS];
+    private final int[] mPoseFrames = new int[POSE_SLOTS * 3];
+    private final double[] mPoseTranslations = new double[POSE_SLOTS * 3];
+    private final double[] mPoseRotations = new double[POSE_SLOTS * 4];
+    private final int[] mPoseSessions = new int[POSE_SLOTS];
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    // Incremented by each start. Every slot is tagged with the session it was claimed in, so that
+    // data claimed before a stop and published after it is never written to the next session.
+    private volatile int mSession = 0;
+    private volatile long mDroppedClouds = 0;
+    private volatile long mDroppedPoses = 0;
+    private volatile int mChunkCount = 0;
+    private volatile IOException mError;
+
+    // Only accessed by the writer thread.
+    private RecordingWriter mWriter;
+    private final double[] mTranslation = new double[3];
+    private final double[] mRotation = new double[4];
+
+    /**
+     * @param directory          Directory where the chunk files are created.
+     * @param name               Prefix of the chunk file names, followed by the chunk number.
+     * @param maxChunkBytes      Size after which a new chunk file is started.
+     * @param pointStride        Only every <code>pointStride</code>th point of each cloud is
+     *                           recorded; 1 records every point.
+     * @param compress           Whether to store the clouds encoded with
+     *                           <code>PointCloudCodec</code>, about 4 times smaller but
+     *                           quantized to millimetres.
+     * @param cloudSlots         Number of clouds that can be waiting for the writer thread.
+     * @param initialCloudPoints Number of points preallocated in each cloud slot. Slots grow
+     *                           if a larger cloud comes in.
+     */
+    public SessionRecorder(File directory, String name, long maxChunkBytes, int pointStride,
+                           boolean compress, int cloudSlots, int initialCloudPoints) {
+        mDirectory = directory;
+        mName = name;
+        mMaxChunkBytes = maxChunkBytes;
+        mPointStride = Math.max(1, pointStride);
+        mCompress = compress;
+        mClouds = new SpscSlots(cloudSlots);
+        mCloudPoints = new FloatBuffer[cloudSlots];
+        mCloudTimestamps = new double[cloudSlots];
+        mCloudPointCounts = new int[cloudSlots];
+        mCloudSessions = new int[cloudSlots];
+        for (int i = 0; i < cloudSlots; i++) {
+            mCloudPoints[i] = allocatePoints(initialCloudPoints * 3);
+        }
+    }
+
+    /**
+     * Starts accepting data and writing it in the background.
+     */
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mError = null;
+        final int session = ++mSession;
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop(session);
+            }
+        }, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Stops accepting data, waits for the pending data to be written and closes the current
+     * chunk.
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Queues a point cloud to be recorded, copying the first <code>pointCount</code> points of
+     * the buffer. The position and limit of the buffer are restored before returning.
+     */
+    @Override
+    public void onXyzIjAvailable(double timestamp, FloatBuffer xyz, int pointCount) {
+        if (!mRunning) {
+            return;
+        }
+        int session = mSession;
+        int slot = mClouds.claim();
+        if (slot < 0) {
+            mDroppedClouds++;
+            return;
+        }
+        FloatBuffer points = mCloudPoints[slot];
+        if (points.capacity() < pointCount * 3) {
+            points = mCloudPoints[slot] = allocatePoints(pointCount * 3);
+        }
+        int position = xyz.position();
+        int limit = xyz.limit();
+        xyz.limit(pointCount * 3).position(0);
+        points.clear();
+        points.put(xyz);
+        xyz.limit(limit).position(position);
+
+        mCloudTimestamps[slot] = timestamp;
+        mCloudPointCounts[slot] = pointCount;
+        mCloudSessions[slot] = session;
+        mClouds.publish();
+    }
+
+    /**
+     * Queues a pose to be recorded.
+     *
+     * @param translation x, y, z translation.
+     * @param rotation    x, y, z, w rotation quaternion.
+     */
+    @Override
+    public void onPoseAvailable(double timestamp, int baseFrame, int targetFrame, int statusCode,
+                                double[] translation, double[] rotation) {
+        if (!mRunning) {
+            return;
+        }
+        int session = mSession;
+        int slot = mPoses.claim();
+        if (slot < 0) {
+            mDroppedPoses++;
+            return;
+        }
+        mPoseTimestamps[slot] = timestamp;
+        mPoseFrames[slot * 3] = baseFrame;
+        mPoseFrames[slot * 3 + 1] = targetFrame;
+        mPoseFrames[slot * 3 + 2] = statusCode;
+        System.arraycopy(translation, 0, mPoseTranslations, slot * 3, 3);
+        System.arraycopy(rotation, 0, mPoseRotations, slot * 4, 4);
+        mPoseSessions[slot] = session;
+        mPoses.publish();
+    }
+
+    /**
+     * Gets the number of clouds dropped because the writer thread was behind.
+     */
+    public long getDroppedClouds() {
+        return mDroppedClouds;
+    }
+
+    /**
+     * Gets the number of poses dropped because the writer thread was behind.
+     */
+    public long getDroppedPoses() {
+        return mDroppedPoses;
+    }
+
+    /**
+     * Gets the number of chunk files created since the recorder was created.
+     */
+    public int getChunkCount() {
+        return mChunkCount;
+    }
+
+    /**
+     * Gets the error that stopped the recording, if any. Data received after an error is
+     * discarded.
+     */
+    public IOException getError() {
+        return mError;
+    }
+
+    /**
+     * Writes the data of the given session until the recorder is stopped and every slot is
+     * released. Slots of an earlier session are released without being written.
+     */
+    private void runLoop(int session) {
+        while (true) {
+            int cloud = mClouds.peek();
+            int pose = mPoses.peek();
+            if (cloud < 0 && pose < 0) {
+                if (!mRunning) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+                continue;
+            }
+
+            // Write the oldest of the two pending records first.
+            boolean writeCloud = pose < 0
+                    || (cloud >= 0 && mCloudTimestamps[cloud] <= mPoseTimestamps[pose]);
+            boolean current = writeCloud
+                    ? mCloudSessions[cloud] == session : mPoseSessions[pose] == session;
+            try {
+                if (mError == null && current) {
+                    if (writeCloud) {
+                        writeCloud(cloud);
+                    } else {
+                        writePose(pose);
+                    }
+                }
+            } catch (IOException e) {
+                mError = e;
+            }
+            if (writeCloud) {
+                mClouds.release();
+            } else {
+                mPoses.release();
+            }
+        }
+
+        if (mWriter != null) {
+            try {
+                mWriter.close();
+            } catch (IOException e) {
+                if (mError == null) {
+                    mError = e;
+                }
+            }
+            mWriter = null;
+        }
+    }
+
+    private void writeCloud(int slot) throws IOException {
+        FloatBuffer points = mCloudPoints[slot];
+        int pointCount = mCloudPointCounts[slot];
+        if (mPointStride > 1) {
+            // Compact the kept points at the start of the slot.
+            int kept = 0;
+            for (int i = 0; i < pointCount; i += mPointStride, kept++) {
+                points.put(kept * 3, points.get(i * 3));
+                points.put(kept * 3 + 1, points.get(i * 3 + 1));
+                points.put(kept * 3 + 2, points.get(i * 3 + 2));
+            }
+            pointCount = kept;
+        }
+        if (mCompress) {
+            prepareChunk(RecordingFormat.RECORD_HEADER_SIZE + RecordingFormat.XYZ_HEADER_SIZE
+                    + PointCloudCodec.getMaxEncodedSize(pointCount));
+            mWriter.writeCompressedXyz(mCloudTimestamps[slot], points, pointCount);
+        } else {
+            prepareChunk(RecordingFormat.RECORD_HEADER_SIZE
+                    + RecordingFormat.getXyzPayloadSize(pointCount));
+            mWriter.writeXyz(mCloudTimestamps[slot], points, pointCount);
+        }
+    }
+
+    private void writePose(int slot) throws IOException {
+        System.arraycopy(mPoseTranslations, slot * 3, mTranslation, 0, 3);
+        System.arraycopy(mPoseRotations, slot * 4, mRotation, 0, 4);
+        prepareChunk(RecordingFormat.RECORD_HEADER_SIZE + RecordingFormat.POSE_PAYLOAD_SIZE);
+        mWriter.writePose(mPoseTimestamps[slot], mPoseFrames[slot * 3],
+                mPoseFrames[slot * 3 + 1], mPoseFrames[slot * 3 + 2], mTranslation, mRotation);
+    }
+
+    /**
+     * Makes sure there is an open chunk with room for a record of the given size, unless the
+     * record alone is bigger than a chunk.
+     */
+    private void prepareChunk(int recordBytes) throws IOException {
+        if (mWriter != null) {
+            long written = mWriter.getBytesWritten();
+            if (written + recordBytes <= mMaxChunkBytes
+                    || written == RecordingFormat.FILE_HEADER_SIZE) {
+                return;
+            }
+            mWriter.close();
+            mWriter = null;
+        }
+        File file = new File(mDirectory,
+                String.format(Locale.US, "%s-%04d%s", mName, mChunkCount, FILE_EXTENSION));
+        int mapSize = (int) Math.min(RecordingWriter.DEFAULT_MAP_SIZE, mMaxChunkBytes);
+        mWriter = new RecordingWriter(file, mapSize);
+        mChunkCount++;
+    }
+
+    private static FloatBuffer allocatePoints(int floatCount) {
+        return ByteBuffer.allocateDirect(floatCount * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
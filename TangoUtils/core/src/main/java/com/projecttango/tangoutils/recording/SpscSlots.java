@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index bookkeeping of a bounded lock-free single-producer single-consumer ring of preallocated
+ * slots. The slots themselves are kept by the owner, in an array indexed by the values returned
+ * here, so handing data over doesn't allocate.
+ *
+ * The producer fills the slot returned by <code>claim</code> and then calls <code>publish</code>;
+ * the consumer reads the slot returned by <code>peek</code> and then calls <code>release</code>.
+ */
+class SpscSlots {
+    private final int mCapacity;
+    // Index of the next slot to be read. Only written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+    // Index of the next slot to be written. Only written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+
+    SpscSlots(int capacity) {
+        mCapacity = capacity;
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Gets the slot to fill next, or -1 if every slot is waiting to be consumed.
+     */
+    int claim() {
+        long tail = mTail.get();
+        if (tail - mHead.get() >= mCapacity) {
+            return -1;
+        }
+        return (int) (tail % mCapacity);
+    }
+
+    /**
+     * Hands the claimed slot over to the consumer.
+     */
+    void publish() {
+        mTail.lazySet(mTail.get() + 1);
+    }
+
+    /**
+     * Gets the oldest published slot, or -1 if there is none.
+     */
+    int peek() {
+        long head = mHead.get();
+        if (head >= mTail.get()) {
+            return -1;
+        }
+        return (int) (head % mCapacity);
+    }
+
+    /**
+     * Hands the slot returned by <code>peek</code> back to the producer.
+     */
+    void release() {
+        mHead.lazySet(mHead.get() + 1);
+    }
+}
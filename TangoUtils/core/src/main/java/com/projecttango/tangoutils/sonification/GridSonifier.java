@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.sonification;
+
+import com.projecttango.tangoutils.obstacles.GridDiffer;
+import com.projecttango.tangoutils.obstacles.OccupancyGrid;
+
+/**
+ * Sweeps the occupancy grid from left to right, one column per tick, playing a note for each
+ * newly occupied cell and a marker note at the end of each sweep.
+ *
+ * Every other row from the top has its own note, panned by column and attenuated by distance
+ * with a <code>SpatialPanner</code>. Only cells reported as newly occupied by the
+ * <code>GridDiffer</code> are played, so new hazards stand out; cleared cells are consumed
+ * silently.
+ *
+ * <code>tick</code> is meant to be run by a <code>SonificationScheduler</code>.
+ */
+public class GridSonifier {
+    // Number of sonified rows, each played with the note of the same index.
+    private static final int NOTE_ROWS = 6;
+    private static final int NOTE_ROW_STEP = 2;
+    private static final int NOTE_PRIORITY = 1;
+    private static final float SWEEP_END_VOLUME = 0.8f;
+    private static final float SWEEP_END_RATE = 5;
+
+    private final OccupancyGrid mGrid;
+    private final GridDiffer mGridDiffer;
+    private final SpatialPanner mPanner;
+    private final NotePlayer mNotePlayer;
+    private final int mSweepEndNote;
+    private volatile int mMaxNotesPerTick;
+
+    private int mColumn = 0;
+
+    /**
+     * @param panner          Panner configured for the width of the grid.
+     * @param sweepEndNote    Note played at the end of each sweep.
+     * @param maxNotesPerTick Maximum number of cell notes started on each tick.
+     */
+    public GridSonifier(OccupancyGrid grid, GridDiffer gridDiffer, SpatialPanner panner,
+                        NotePlayer notePlayer, int sweepEndNote, int maxNotesPerTick) {
+        mGrid = grid;
+        mGridDiffer = gridDiffer;
+        mPanner = panner;
+        mNotePlayer = notePlayer;
+        mSweepEndNote = sweepEndNote;
+        mMaxNotesPerTick = maxNotesPerTick;
+    }
+
+    /**
+     * Changes the maximum number of cell notes started on each tick, e.g. to lower the mixing
+     * load. Can be called from any thread.
+     */
+    public void setMaxNotesPerTick(int maxNotesPerTick) {
+        mMaxNotesPerTick = maxNotesPerTick;
+    }
+
+    /**
+     * Restarts the sweep from the left.
+     */
+    public void reset() {
+        mColumn = 0;
+    }
+
+    /**
+     * Plays the next column of the sweep, or the end of sweep note.
+     *
+     * @return the number of notes played.
+     */
+    public int tick() {
+        if (mColumn == mGrid.getWidth()) {
+            mNotePlayer.play(mSweepEndNote, SWEEP_END_VOLUME, SWEEP_END_VOLUME, 0,
+                    SWEEP_END_RATE);
+            mColumn = 0;
+            return 1;
+        }
+
+        float left = mPanner.getLeftGain(mColumn);
+        float right = mPanner.getRightGain(mColumn);
+        int maxNotes = mMaxNotesPerTick;
+        int notes = 0;
+        for (int note = 0; note < NOTE_ROWS; note++) {
+            if (notes >= maxNotes) {
+                // Leave the remaining changes pending, they are played on the next sweep.
+                break;
+            }
+            int row = note * NOTE_ROW_STEP;
+            int change = mGridDiffer.consumeChange(row, mColumn);
+            if (change == GridDiffer.CHANGE_OCCUPIED) {
+                float gain = mPanner.getDistanceGain(mGrid.getDistance(row, mColumn));
+                mNotePlayer.play(note, left * gain, right * gain, NOTE_PRIORITY, note);
+                notes++;
+            }
+        }
+        mColumn++;
+        return notes;
+    }
+}
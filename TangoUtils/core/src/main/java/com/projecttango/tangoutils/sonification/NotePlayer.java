@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.sonification;
+
+/**
+ * Plays short notes by index, e.g. to sonify the obstacle grid.
+ */
+public interface NotePlayer {
+    /**
+     * Plays a note.
+     *
+     * @param note        Note index.
+     * @param leftVolume  Left channel volume, from 0 to 1.
+     * @param rightVolume Right channel volume, from 0 to 1.
+     * @param priority    Note priority, 0 being the lowest. Implementations may ignore it.
+     * @param rate        Playback rate, from 0.5 to 2.
+     * @return a non zero id if the note is playing, 0 otherwise.
+     */
+    int play(int note, float leftVolume, float rightVolume, int priority, float rate);
+
+    /**
+     * Releases the resources used by the player. It can't be used after this.
+     */
+    void release();
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.sonification;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the sonification tick at a steady tempo on a single thread, created with the given
+ * <code>ThreadFactory</code> so that the platform can raise its priority.
+ *
+ * Unlike <code>java.util.Timer</code>, ticks are scheduled against absolute
+ * <code>System.nanoTime()</code> deadlines, so a late tick (e.g. because of a GC pause) doesn't
+ * shift every tick after it. What happens with the ticks missed during a long stall is decided by
+ * the <code>LatePolicy</code>. A tick throwing a <code>RuntimeException</code> is counted and
+ * doesn't stop the scheduler.
+ *
+ * <code>start</code> and <code>stop</code> are meant to be called from the activity lifecycle
+ * callbacks; calling <code>start</code> on a running scheduler does nothing.
+ */
+public class SonificationScheduler {
+    public enum LatePolicy {
+        // Run the missed ticks back to back (up to a limit) to keep the number of ticks right.
+        CATCH_UP,
+        // Drop the missed ticks and continue on the original beat.
+        SKIP
+    }
+
+    private final Runnable mTick;
+    private final ThreadFactory mThreadFactory;
+    private final long mPeriodNanos;
+    private final LatePolicy mLatePolicy;
+    private final int mMaxCatchUpTicks;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    private volatile long mSkippedTicks = 0;
+    private volatile long mFailedTicks = 0;
+
+    /**
+     * @param periodMs        Time between ticks, in milliseconds.
+     * @param latePolicy      What to do with ticks missed during a stall.
+     * @param maxCatchUpTicks With <code>CATCH_UP</code>, the maximum number of missed ticks to run
+     *                        back to back; any beyond that are skipped.
+     * @param threadFactory   Creates the scheduler thread, e.g. to give it audio priority.
+     * @param tick            Work done on each tick, in the scheduler thread.
+     */
+    public SonificationScheduler(long periodMs, LatePolicy latePolicy, int maxCatchUpTicks,
+                                 ThreadFactory threadFactory, Runnable tick) {
+        mPeriodNanos = periodMs * 1000000L;
+        mLatePolicy = latePolicy;
+        mMaxCatchUpTicks = maxCatchUpTicks;
+        mThreadFactory = threadFactory;
+        mTick = tick;
+    }
+
+    /**
+     * Starts ticking, with the first tick right away.
+     */
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mThread = mThreadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        });
+        mThread.start();
+    }
+
+    /**
+     * Stops ticking and waits for the current tick, if any, to finish.
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Gets the number of ticks dropped because they were too late.
+     */
+    public long getSkippedTicks() {
+        return mSkippedTicks;
+    }
+
+    /**
+     * Gets the number of ticks that threw an exception.
+     */
+    public long getFailedTicks() {
+        return mFailedTicks;
+    }
+
+    private void runLoop() {
+        long deadline = System.nanoTime();
+        while (mRunning) {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            try {
+                mTick.run();
+            } catch (RuntimeException e) {
+                mFailedTicks++;
+            }
+            deadline += mPeriodNanos;
+
+            // Number of whole ticks whose deadline has already passed.
+            long missed = (System.nanoTime() - deadline) / mPeriodNanos;
+            if (missed > 0) {
+                long skipped = mLatePolicy == LatePolicy.SKIP
+                        ? missed : Math.max(0, missed - mMaxCatchUpTicks);
+                deadline += skipped * mPeriodNanos;
+                mSkippedTicks += skipped;
+            }
+        }
+    }
+}
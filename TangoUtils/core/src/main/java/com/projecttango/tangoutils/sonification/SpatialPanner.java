@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.projecttango.tangoutils.sonification;
+
+/**
+ * Stereo placement of the obstacle grid sonification.
+ *
+ * Each grid column is panned continuously according to its horizontal position with an equal
+ * power pan law, and notes are attenuated with the distance to the obstacle. Both are looked up
+ * in tables precomputed by <code>configure</code>, so the per-note cost is a couple of array
+ * reads.
+ */
+public class SpatialPanner {
+    // Number of steps in the distance gain table.
+    private static final int DISTANCE_STEPS = 64;
+    // Gain of the farthest obstacles, the closest ones play at full volume.
+    private static final float MIN_DISTANCE_GAIN = 0.2f;
+
+    private float[] mLeftGains = new float[0];
+    private float[] mRightGains = new float[0];
+    private final float[] mDistanceGains = new float[DISTANCE_STEPS + 1];
+    private float mMaxDistance = 1;
+
+    /**
+     * Precomputes the pan and gain tables for a grid.
+     *
+     * @param gridWidth   Number of columns of the grid, from left to right.
+     * @param maxDistance Distance at and beyond which obstacles play at the minimum gain, in
+     *                    meters.
+     */
+    public void configure(int gridWidth, float maxDistance) {
+        mLeftGains = new float[gridWidth];
+        mRightGains = new float[gridWidth];
+        for (int column = 0; column < gridWidth; column++) {
+            // Position of the column center, from -1 (left) to 1 (right).
+            double pan = 2.0 * (column + 0.5) / gridWidth - 1.0;
+            double angle = (pan + 1.0) * Math.PI / 4.0;
+            mLeftGains[column] = (float) Math.cos(angle);
+            mRightGains[column] = (float) Math.sin(angle);
+        }
+
+        mMaxDistance = maxDistance;
+        for (int step = 0; step <= DISTANCE_STEPS; step++) {
+            float t = (float) step / DISTANCE_STEPS;
+            mDistanceGains[step] = 1f - (1f - MIN_DISTANCE_GAIN) * t;
+        }
+    }
+
+    /**
+     * Gets the left channel gain of a column, from 0 to 1.
+     */
+    public float getLeftGain(int column) {
+        return mLeftGains[column];
+    }
+
+    /**
+     * Gets the right channel gain of a column, from 0 to 1.
+     */
+    public float getRightGain(int column) {
+        return mRightGains[column];
+    }
+
+    /**
+     * Gets the gain of an obstacle at the given distance in meters, from MIN_DISTANCE_GAIN to 1.
+     */
+    public float getDistanceGain(float distance) {
+        int step = (int) (distance / mMaxDistance * DISTANCE_STEPS);
+        return mDistanceGains[Math.max(0, Math.min(step, DISTANCE_STEPS))];
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.spatial;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Uniform hash grid over the points of a depth cloud, for radius, k-nearest and ray-march queries
+ * that only look at the points around the query instead of scanning the whole cloud.
+ *
+ * <code>build</code> copies the cloud and counting-sorts the point indices by hashed cell into
+ * flat primitive arrays, in two linear passes and without allocating once the arrays have grown
+ * to the cloud size. Cells hashing to the same bucket share it; queries check the cell of every
+ * point, so collisions only cost time. Queries write point indices, in the order of the built
+ * cloud, into caller provided arrays.
+ *
+ * Building and querying must happen in the same thread, or be synchronized by the caller.
+ */
+public class SpatialHashGrid {
+    // Large primes of the usual spatial hash.
+    private static final int PRIME_X = 73856093;
+    private static final int PRIME_Y = 19349663;
+    private static final int PRIME_Z = 83492791;
+
+    private final float mCellSize;
+    private final float mInverseCellSize;
+    private final int mBucketMask;
+    // Index in mSortedIndices of the first point of each bucket, plus the total count at the end.
+    private final int[] mBucketStarts;
+
+    private float[] mPoints;
+    private int[] mPointBuckets;
+    private int[] mSortedIndices;
+    private int mPointCount = 0;
+
+    /**
+     * @param cellSize      Size of the cells, in meters. Queries are fastest when their radius is
+     *                      about the cell size.
+     * @param bucketCount   Number of hash buckets, rounded up to a power of two. Should be in the
+     *                      order of the number of occupied cells.
+     * @param initialPoints Number of points preallocated. The arrays grow as needed.
+     */
+    public SpatialHashGrid(float cellSize, int bucketCount, int initialPoints) {
+        mCellSize = cellSize;
+        mInverseCellSize = 1 / cellSize;
+        int buckets = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        mBucketMask = buckets - 1;
+        mBucketStarts = new int[buckets + 1];
+        allocate(initialPoints);
+    }
+
+    /**
+     * Indexes the points of a cloud, replacing the previous one. Reads xyz with absolute gets.
+     */
+    public void build(FloatBuffer xyz, int pointCount) {
+        if (mPointBuckets.length < pointCount) {
+            allocate(pointCount);
+        }
+        mPointCount = pointCount;
+        int[] starts = mBucketStarts;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = 0;
+        }
+
+        // Copy the points and count the points of each bucket.
+        for (int i = 0; i < pointCount; i++) {
+            float x = xyz.get(i * 3);
+            float y = xyz.get(i * 3 + 1);
+            float z = xyz.get(i * 3 + 2);
+            mPoints[i * 3] = x;
+            mPoints[i * 3 + 1] = y;
+            mPoints[i * 3 + 2] = z;
+            int bucket = getBucket(getCell(x), getCell(y), getCell(z));
+            mPointBuckets[i] = bucket;
+            starts[bucket + 1]++;
+        }
+        for (int bucket = 0; bucket < mBucketMask + 1; bucket++) {
+            starts[bucket + 1] += starts[bucket];
+        }
+        // Scatter the indices, using the starts as write cursors and shifting them back after.
+        for (int i = 0; i < pointCount; i++) {
+            mSortedIndices[starts[mPointBuckets[i]]++] = i;
+        }
+        for (int bucket = mBucketMask; bucket > 0; bucket--) {
+            starts[bucket] = starts[bucket - 1];
+        }
+        starts[0] = 0;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public float getX(int index) {
+        return mPoints[index * 3];
+    }
+
+    public float getY(int index) {
+        return mPoints[index * 3 + 1];
+    }
+
+    public float getZ(int index) {
+        return mPoints[index * 3 + 2];
+    }
+
+    /**
+     * Finds the points within a radius of a position, in no particular order.
+     *
+     * @param outIndices Receives the indices of the points found, up to its length.
+     * @return the number of points found, which may exceed the length of outIndices.
+     */
+    public int radiusSearch(float x, float y, float z, float radius, int[] outIndices) {
+        float radiusSquared = radius * radius;
+        int found = 0;
+        int minX = getCell(x - radius);
+        int maxX = getCell(x + radius);
+        int minY = getCell(y - radius);
+        int maxY = getCell(y + radius);
+        int minZ = getCell(z - radius);
+        int maxZ = getCell(z + radius);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    int bucket = getBucket(cx, cy, cz);
+                    for (int s = mBucketStarts[bucket]; s < mBucketStarts[bucket + 1]; s++) {
+                        int index = mSortedIndices[s];
+                        if (isInCell(index, cx, cy, cz)
+                                && getDistanceSquared(index, x, y, z) <= radiusSquared) {
+                            if (found < outIndices.length) {
+                                outIndices[found] = index;
+                            }
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the k points nearest to a position, searching rings of cells outwards until the k
+     * nearest are known or maxDistance is reached.
+     *
+     * @param outIndices          Receives the indices of the points found, nearest first. Its
+     *                            length is k.
+     * @param outDistancesSquared Receives the squared distances of the points found. At least as
+     *                            long as outIndices.
+     * @return the number of points found, at most k.
+     */
+    public int nearest(float x, float y, float z, float maxDistance, int[] outIndices,
+                       float[] outDistancesSquared) {
+        int k = outIndices.length;
+        if (k == 0) {
+            return 0;
+        }
+        float maxDistanceSquared = maxDistance * maxDistance;
+        int centerX = getCell(x);
+        int centerY = getCell(y);
+        int centerZ = getCell(z);
+        int maxRing = (int) Math.ceil(maxDistance * mInverseCellSize);
+        int found = 0;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                for (int cy = centerY - ring; cy <= centerY + ring; cy++) {
+                    for (int cz = centerZ - ring; cz <= centerZ + ring; cz++) {
+                        // Only the shell of the cube, the inside was searched by earlier rings.
+                        if (Math.abs(cx - centerX) != ring && Math.abs(cy - centerY) != ring
+                                && Math.abs(cz - centerZ) != ring) {
+                            continue;
+                        }
+                        int bucket = getBucket(cx, cy, cz);
+                        for (int s = mBucketStarts[bucket]; s < mBucketStarts[bucket + 1]; s++) {
+                            int index = mSortedIndices[s];
+                            if (!isInCell(index, cx, cy, cz)) {
+                                continue;
+                            }
+                            float distanceSquared = getDistanceSquared(index, x, y, z);
+                            if (distanceSquared <= maxDistanceSquared) {
+                                found = insertNearest(index, distanceSquared, found, outIndices,
+                                        outDistancesSquared);
+                            }
+                        }
+                    }
+                }
+            }
+            // Points in the following rings are at least this far from the position.
+            float ringDistance = ring * mCellSize;
+            if (found == k && outDistancesSquared[k - 1] <= ringDistance * ringDistance) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Marches along a ray, given by its origin and normalized direction, and finds the first
+     * point within hitRadius of it.
+     *
+     * @param hitRadius   Maximum distance between the ray and the hit point. Also the step of the
+     *                    march, so it should be about the spacing of the points. Must be
+     *                    positive.
+     * @param maxDistance Length of the ray.
+     * @return the index of the point nearest to the first sample of the ray that has one within
+     * hitRadius, or -1 if there is none.
+     */
+    public int rayMarch(float originX, float originY, float originZ, float dx, float dy, float dz,
+                        float hitRadius, float maxDistance) {
+        // Also rejects NaN, either would never advance along the ray.
+        if (!(hitRadius > 0)) {
+            throw new IllegalArgumentException("Hit radius must be positive: " + hitRadius);
+        }
+        float hitRadiusSquared = hitRadius * hitRadius;
+        // Counting steps rather than accumulating t, which stops advancing once hitRadius is
+        // below its precision.
+        long stepCount = (long) (maxDistance / hitRadius);
+        for (long step = 0; step <= stepCount; step++) {
+            float t = step * hitRadius;
+            float x = originX + dx * t;
+            float y = originY + dy * t;
+            float z = originZ + dz * t;
+            int nearest = -1;
+            float nearestDistanceSquared = hitRadiusSquared;
+            int minX = getCell(x - hitRadius);
+            int maxX = getCell(x + hitRadius);
+            int minY = getCell(y - hitRadius);
+            int maxY = getCell(y + hitRadius);
+            int minZ = getCell(z - hitRadius);
+            int maxZ = getCell(z + hitRadius);
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cy = minY; cy <= maxY; cy++) {
+                    for (int cz = minZ; cz <= maxZ; cz++) {
+                        int bucket = getBucket(cx, cy, cz);
+                        for (int s = mBucketStarts[bucket]; s < mBucketStarts[bucket + 1]; s++) {
+                            int index = mSortedIndices[s];
+                            if (!isInCell(index, cx, cy, cz)) {
+                                continue;
+                            }
+                            float distanceSquared = getDistanceSquared(index, x, y, z);
+                            if (distanceSquared <= nearestDistanceSquared) {
+                                nearest = index;
+                                nearestDistanceSquared = distanceSquared;
+                            }
+                        }
+                    }
+                }
+            }
+            if (nearest >= 0) {
+                return nearest;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts a point into the sorted k nearest found so far, dropping the farthest if full.
+     *
+     * @return the new number of points found.
+     */
+    private static int insertNearest(int index, float distanceSquared, int found, int[] indices,
+                                     float[] distancesSquared) {
+        int k = indices.length;
+        if (found == k && distanceSquared >= distancesSquared[k - 1]) {
+            return found;
+        }
+        int position = found == k ? k - 1 : found;
+        while (position > 0 && distancesSquared[position - 1] > distanceSquared) {
+            indices[position] = indices[position - 1];
+            distancesSquared[position] = distancesSquared[position - 1];
+            position--;
+        }
+        indices[position] = index;
+        distancesSquared[position] = distanceSquared;
+        return found == k ? k : found + 1;
+    }
+
+    private boolean isInCell(int index, int cx, int cy, int cz) {
+        return getCell(mPoints[index * 3]) == cx && getCell(mPoints[index * 3 + 1]) == cy
+                && getCell(mPoints[index * 3 + 2]) == cz;
+    }
+
+    private float getDistanceSquared(int index, float x, float y, float z) {
+        float dx = mPoints[index * 3] - x;
+        float dy = mPoints[index * 3 + 1] - y;
+        float dz = mPoints[index * 3 + 2] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int getCell(float coordinate) {
+        return (int) Math.floor(coordinate * mInverseCellSize);
+    }
+
+    private int getBucket(int cx, int cy, int cz) {
+        return ((cx * PRIME_X) ^ (cy * PRIME_Y) ^ (cz * PRIME_Z)) & mBucketMask;
+    }
+
+    private void allocate(int pointCount) {
+        mPoints = new float[pointCount * 3];
+        mPointBuckets = new int[pointCount];
+        mSortedIndices = new int[pointCount];
+    }
+}
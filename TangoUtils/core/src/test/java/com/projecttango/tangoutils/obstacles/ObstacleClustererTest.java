@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.obstacles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class ObstacleClustererTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 13;
+
+    private final OccupancyGrid mGrid = new OccupancyGrid(WIDTH, HEIGHT);
+    private final ObstacleClusterer mClusterer = new ObstacleClusterer(WIDTH, HEIGHT, 2);
+
+    @Test
+    public void measuresClustersAndDropsSmallOnes() {
+        // A diagonal group, an isolated cell and a horizontal group.
+        mGrid.mark(2, 2, 1.5f);
+        mGrid.mark(3, 3, 1.4f);
+        mGrid.mark(4, 2, 1.6f);
+        mGrid.mark(12, 19, 0.5f);
+        mGrid.mark(8, 10, 2f);
+        mGrid.mark(8, 11, 2.1f);
+        assertEquals(2, mClusterer.update(mGrid));
+
+        int first = mClusterer.getCluster(2, 2);
+        assertEquals(first, mClusterer.getCluster(4, 2));
+        assertEquals(3, mClusterer.getCellCount(first));
+        assertEquals(2, mClusterer.getMinRow(first));
+        assertEquals(4, mClusterer.getMaxRow(first));
+        assertEquals(2, mClusterer.getMinColumn(first));
+        assertEquals(3, mClusterer.getMaxColumn(first));
+        assertEquals(3, mClusterer.getCentroidRow(first), 1e-6);
+        assertEquals(7 / 3f, mClusterer.getCentroidColumn(first), 1e-6);
+        assertEquals(1.4f, mClusterer.getNearestDistance(first), 0);
+        assertEquals(first, mClusterer.getNearestCluster());
+        assertEquals(-1, mClusterer.getCluster(12, 19));
+        assertEquals(-1, mClusterer.getCluster(0, 0));
+    }
+
+    @Test
+    public void keepsIdsOfOverlappingClusters() {
+        mGrid.mark(2, 2, 1);
+        mGrid.mark(2, 3, 1);
+        mGrid.mark(8, 10, 1);
+        mGrid.mark(8, 11, 1);
+        mClusterer.update(mGrid);
+        int firstId = getId(2, 2);
+        int secondId = getId(8, 10);
+        assertNotEquals(firstId, secondId);
+
+        // Both move one cell to the right and a new cluster appears before them in scan order.
+        mGrid.clear();
+        mGrid.mark(0, 0, 1);
+        mGrid.mark(0, 1, 1);
+        mGrid.mark(2, 3, 1);
+        mGrid.mark(2, 4, 1);
+        mGrid.mark(8, 11, 1);
+        mGrid.mark(8, 12, 1);
+        assertEquals(3, mClusterer.update(mGrid));
+        assertEquals(firstId, getId(2, 3));
+        assertEquals(secondId, getId(8, 11));
+        int newId = getId(0, 0);
+        assertNotEquals(firstId, newId);
+        assertNotEquals(secondId, newId);
+
+        // A cluster that no longer overlaps gets a new id.
+        mGrid.clear();
+        mGrid.mark(2, 6, 1);
+        mGrid.mark(2, 7, 1);
+        assertEquals(1, mClusterer.update(mGrid));
+        int movedId = getId(2, 6);
+        assertNotEquals(firstId, movedId);
+        assertNotEquals(secondId, movedId);
+        assertNotEquals(newId, movedId);
+    }
+
+    @Test
+    public void keepsTheIdOfTheLargestOverlapAcrossMergesAndSplits() {
+        // Two clusters merge: the merged one keeps the id of the one it overlaps the most.
+        mGrid.mark(5, 2, 1);
+        mGrid.mark(5, 3, 1);
+        mGrid.mark(5, 6, 1);
+        mGrid.mark(5, 7, 1);
+        mGrid.mark(5, 8, 1);
+        mClusterer.update(mGrid);
+        int smallId = getId(5, 2);
+        int largeId = getId(5, 6);
+
+        for (int column = 2; column <= 8; column++) {
+            mGrid.mark(5, column, 1);
+        }
+        assertEquals(1, mClusterer.update(mGrid));
+        assertEquals(largeId, getId(5, 2));
+
+        // It splits again: the largest part keeps the id, the other gets a new one.
+        mGrid.clear();
+        mGrid.mark(5, 2, 1);
+        mGrid.mark(5, 3, 1);
+        mGrid.mark(5, 5, 1);
+        mGrid.mark(5, 6, 1);
+        mGrid.mark(5, 7, 1);
+        mGrid.mark(5, 8, 1);
+        assertEquals(2, mClusterer.update(mGrid));
+        assertEquals(largeId, getId(5, 5));
+        int splitId = getId(5, 2);
+        assertNotEquals(largeId, splitId);
+        assertNotEquals(smallId, splitId);
+    }
+
+    private int getId(int row, int column) {
+        return mClusterer.getId(mClusterer.getCluster(row, column));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class DropOldestQueueTest {
+    @Test
+    public void evictsTheOldestItemWhenFull() {
+        DropOldestQueue<String> queue = new DropOldestQueue<String>(2);
+        assertNull(queue.offer("a"));
+        assertNull(queue.offer("b"));
+        assertEquals(0, queue.getDroppedCount());
+
+        assertEquals("a", queue.offer("c"));
+        assertEquals("b", queue.offer("d"));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+
+        assertEquals("c", queue.poll());
+        assertEquals("d", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    public void keepsOrderAcrossTheEndOfTheArray() throws InterruptedException {
+        DropOldestQueue<Integer> queue = new DropOldestQueue<Integer>(3);
+        queue.offer(0);
+        queue.offer(1);
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertNull(queue.offer(2));
+        assertNull(queue.offer(3));
+        assertEquals(Integer.valueOf(1), queue.offer(4));
+        assertEquals(Integer.valueOf(2), queue.offer(5));
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(Integer.valueOf(3), queue.take());
+        assertEquals(Integer.valueOf(4), queue.take());
+        assertEquals(Integer.valueOf(5), queue.take());
+    }
+
+    @Test
+    public void takeWaitsForAnItem() throws InterruptedException {
+        final DropOldestQueue<String> queue = new DropOldestQueue<String>(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.offer("a");
+            }
+        });
+        producer.start();
+        assertEquals("a", queue.take());
+        producer.join();
+        assertEquals(0, queue.getDroppedCount());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessingGovernorTest {
+    private static final int STAGE_LOW = 0;
+    private static final int STAGE_HIGH = 1;
+    private static final long PERIOD_NANOS = 100000000L;
+    private static final long BUDGET_NANOS = 10000000L;
+
+    private ProcessingGovernor mGovernor;
+    private long mNow = 0;
+
+    @Before
+    public void setUp() {
+        mGovernor = new ProcessingGovernor(2, PERIOD_NANOS / 1000000L);
+        mGovernor.configureStage(STAGE_LOW, 0, BUDGET_NANOS / 1e6, 2);
+        mGovernor.configureStage(STAGE_HIGH, 1, BUDGET_NANOS / 1e6, 1);
+    }
+
+    @Test
+    public void degradesTheLowestPriorityStageFirst() {
+        // Only the high priority stage misses its budget, but the low priority one degrades.
+        mGovernor.record(STAGE_HIGH, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        assertLevels(1, 0);
+
+        mGovernor.record(STAGE_HIGH, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        assertLevels(2, 0);
+
+        mGovernor.record(STAGE_HIGH, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        assertLevels(2, 1);
+
+        // Every stage is at its maximum level.
+        mGovernor.record(STAGE_HIGH, 2 * BUDGET_NANOS);
+        assertFalse(evaluate());
+        assertLevels(2, 1);
+    }
+
+    @Test
+    public void waitsForTheEvaluationPeriod() {
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        assertFalse(mGovernor.evaluate(mNow + PERIOD_NANOS / 2));
+        assertLevels(1, 0);
+        // The runs are kept for the next evaluation.
+        assertTrue(evaluate());
+        assertLevels(2, 0);
+    }
+
+    @Test
+    public void toleratesATenthOfTheRunsMissingTheirBudget() {
+        recordRuns(STAGE_LOW, 9, BUDGET_NANOS / 10);
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        assertFalse(evaluate());
+        assertLevels(0, 0);
+
+        recordRuns(STAGE_LOW, 8, BUDGET_NANOS / 10);
+        recordRuns(STAGE_LOW, 2, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        assertLevels(1, 0);
+    }
+
+    @Test
+    public void restoresTheHighestPriorityStageFirst() {
+        for (int i = 0; i < 3; i++) {
+            mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+            assertTrue(evaluate());
+        }
+        assertLevels(2, 1);
+
+        assertTrue(relax());
+        assertLevels(2, 0);
+        assertTrue(relax());
+        assertLevels(1, 0);
+        assertTrue(relax());
+        assertLevels(0, 0);
+        assertFalse(relax());
+    }
+
+    @Test
+    public void restoresOnlyAfterConsecutiveEvaluationsWithHeadroom() {
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+
+        recordRuns(STAGE_LOW, 1, BUDGET_NANOS / 10);
+        assertFalse(evaluate());
+        recordRuns(STAGE_LOW, 1, BUDGET_NANOS / 10);
+        assertFalse(evaluate());
+        // Within the budget but above half of it: no headroom, the count starts over.
+        recordRuns(STAGE_LOW, 1, BUDGET_NANOS * 3 / 4);
+        assertFalse(evaluate());
+        assertLevels(1, 0);
+
+        assertTrue(relax());
+        assertLevels(0, 0);
+        assertEquals(BUDGET_NANOS / 10, mGovernor.getMeanNanos(STAGE_LOW));
+    }
+
+    @Test
+    public void resetRestoresFullQuality() {
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        assertTrue(evaluate());
+        mGovernor.record(STAGE_LOW, 2 * BUDGET_NANOS);
+        mGovernor.reset();
+        assertLevels(0, 0);
+        // The run recorded before the reset is forgotten, and the next evaluation happens now.
+        assertFalse(mGovernor.evaluate(mNow));
+        assertLevels(0, 0);
+    }
+
+    /**
+     * Evaluates the governor one period after the previous evaluation.
+     */
+    private boolean evaluate() {
+        mNow += PERIOD_NANOS;
+        return mGovernor.evaluate(mNow);
+    }
+
+    /**
+     * Runs the evaluations needed to restore a level, with every stage well within its budget.
+     *
+     * @return whether the last evaluation changed a level.
+     */
+    private boolean relax() {
+        boolean changed = false;
+        for (int i = 0; i < 3; i++) {
+            recordRuns(STAGE_LOW, 1, BUDGET_NANOS / 10);
+            recordRuns(STAGE_HIGH, 1, BUDGET_NANOS / 10);
+            changed = evaluate();
+            if (i < 2) {
+                assertFalse(changed);
+            }
+        }
+        return changed;
+    }
+
+    private void recordRuns(int stage, int count, long nanos) {
+        for (int i = 0; i < count; i++) {
+            mGovernor.record(stage, nanos);
+        }
+    }
+
+    private void assertLevels(int low, int high) {
+        assertEquals(low, mGovernor.getLevel(STAGE_LOW));
+        assertEquals(high, mGovernor.getLevel(STAGE_HIGH));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PointCloudCodecTest {
+    // Half a quantization step, plus the float rounding of the decoded coordinates.
+    private static final float MAX_ERROR = PointCloudCodec.RESOLUTION / 2 + 1e-6f;
+
+    @Test
+    public void roundTripStaysWithinHalfAStep() {
+        int pointCount = 10000;
+        Random random = new Random(42);
+        FloatBuffer xyz = FloatBuffer.allocate(pointCount * 3);
+        for (int i = 0; i < pointCount; i++) {
+            xyz.put(random.nextFloat() * 8 - 4);
+            xyz.put(random.nextFloat() * 6 - 3);
+            xyz.put(0.5f + random.nextFloat() * 4);
+        }
+        xyz.flip();
+        ByteBuffer encoded = ByteBuffer.allocate(PointCloudCodec.getMaxEncodedSize(pointCount))
+                .order(RecordingFormat.BYTE_ORDER);
+
+        int size = PointCloudCodec.encode(xyz, pointCount, encoded);
+        assertEquals(size, encoded.position());
+        assertEquals(0, xyz.position());
+
+        encoded.flip();
+        FloatBuffer decoded = ByteBuffer.allocateDirect(pointCount * 3 * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        PointCloudCodec.decode(encoded, pointCount, decoded);
+        assertEquals(size, encoded.position());
+        assertEquals(pointCount * 3, decoded.position());
+        for (int i = 0; i < pointCount * 3; i++) {
+            assertEquals("coordinate " + i, xyz.get(i), decoded.get(i), MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void emptyCloudTakesNoBytes() {
+        ByteBuffer encoded = ByteBuffer.allocate(PointCloudCodec.getMaxEncodedSize(0));
+        assertEquals(0, PointCloudCodec.encode(FloatBuffer.allocate(0), 0, encoded));
+        assertEquals(0, encoded.position());
+
+        FloatBuffer decoded = FloatBuffer.allocate(0);
+        PointCloudCodec.decode(encoded, 0, decoded);
+        assertEquals(0, encoded.position());
+        assertEquals(0, decoded.position());
+    }
+}
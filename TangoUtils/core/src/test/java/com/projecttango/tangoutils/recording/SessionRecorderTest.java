@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.projecttango.tangoutils.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Locale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionRecorderTest {
+    private static final String NAME = "session";
+    private static final int CLOUD_COUNT = 7;
+    private static final int POINT_COUNT = 100;
+    private static final int XYZ_RECORD_SIZE = RecordingFormat.RECORD_HEADER_SIZE
+            + RecordingFormat.getXyzPayloadSize(POINT_COUNT);
+    private static final int COMPRESSED_RECORD_SIZE = RecordingFormat.RECORD_HEADER_SIZE
+            + RecordingFormat.XYZ_HEADER_SIZE + PointCloudCodec.getMaxEncodedSize(POINT_COUNT);
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void splitsCloudsIntoChunks() throws IOException {
+        // Room for exactly two clouds per chunk.
+        long maxChunkBytes = RecordingFormat.FILE_HEADER_SIZE + 2 * XYZ_RECORD_SIZE;
+        File directory = mFolder.getRoot();
+        SessionRecorder recorder = record(directory, maxChunkBytes, false);
+
+        assertEquals((CLOUD_COUNT + 1) / 2, recorder.getChunkCount());
+        int cloud = readChunks(directory, recorder.getChunkCount(), maxChunkBytes,
+                RecordingFormat.RECORD_XYZ, 0);
+        assertEquals(CLOUD_COUNT, cloud);
+    }
+
+    @Test
+    public void splitsCompressedCloudsIntoChunks() throws IOException {
+        long maxChunkBytes = RecordingFormat.FILE_HEADER_SIZE + 2 * COMPRESSED_RECORD_SIZE;
+        File directory = mFolder.getRoot();
+        SessionRecorder recorder = record(directory, maxChunkBytes, true);
+
+        assertTrue(recorder.getChunkCount() > 1);
+        int cloud = readChunks(directory, recorder.getChunkCount(), maxChunkBytes,
+                RecordingFormat.RECORD_XYZ_COMPRESSED, PointCloudCodec.RESOLUTION / 2 + 1e-6f);
+        assertEquals(CLOUD_COUNT, cloud);
+    }
+
+    private static SessionRecorder record(File directory, long maxChunkBytes, boolean compress) {
+        // A slot per cloud, so that none is dropped however slow the writer thread is.
+        SessionRecorder recorder = new SessionRecorder(directory, NAME, maxChunkBytes, 1,
+                compress, CLOUD_COUNT, POINT_COUNT);
+        recorder.start();
+        FloatBuffer xyz = FloatBuffer.allocate(POINT_COUNT * 3);
+        for (int cloud = 0; cloud < CLOUD_COUNT; cloud++) {
+            fillCloud(xyz, cloud);
+            recorder.onXyzIjAvailable(cloud, xyz, POINT_COUNT);
+        }
+        recorder.stop();
+        assertNull(recorder.getError());
+        assertEquals(0, recorder.getDroppedClouds());
+        return recorder;
+    }
+
+    /**
+     * Reads every chunk in order and checks the clouds against those recorded.
+     *
+     * @return the number of clouds read.
+     */
+    private static int readChunks(File directory, int chunkCount, long maxChunkBytes, int type,
+                                  float maxError) throws IOException {
+        FloatBuffer expected = FloatBuffer.allocate(POINT_COUNT * 3);
+        FloatBuffer points = FloatBuffer.allocate(POINT_COUNT * 3);
+        int cloud = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            File file = new File(directory, String.format(Locale.US, "%s-%04d%s", NAME, chunk,
+                    SessionRecorder.FILE_EXTENSION));
+            assertTrue(file.length() <= maxChunkBytes);
+            RecordingReader reader = new RecordingReader(file);
+            int recordCount = 0;
+            while (reader.next() != RecordingReader.END_OF_RECORDING) {
+                assertEquals(type, reader.getType());
+                assertEquals(cloud, reader.getTimestamp(), 0);
+                assertEquals(POINT_COUNT, reader.getPointCount());
+                reader.getPoints(points);
+                fillCloud(expected, cloud);
+                for (int i = 0; i < POINT_COUNT * 3; i++) {
+                    assertEquals(expected.get(i), points.get(i), maxError);
+                }
+                recordCount++;
+                cloud++;
+            }
+            assertTrue("empty chunk " + chunk, recordCount > 0);
+        }
+        return cloud;
+    }
+
+    private static void fillCloud(FloatBuffer xyz, int cloud) {
+        xyz.clear();
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xyz.put(i * 0.01f);
+            xyz.put(cloud * 0.1f);
+            xyz.put(1 + i * 0.003f);
+        }
+        xyz.flip();
+    }
+}